@@ -0,0 +1,97 @@
+package springia.ragollamapdf.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import springia.ragollamapdf.resilience.AdaptiveConcurrencyLimiter;
+import springia.ragollamapdf.resilience.AdmissionControlFilter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Separate admission budgets for ingestion (uploads to /upload and /documents) and
+ * queries (/, /jira). Listing and deleting documents is cheap and is not limited.
+ */
+@Configuration
+public class AdmissionControlConfig {
+
+    // Ahead of any filter that could read the request body
+    private static final int FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+
+    @Value("${admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Value("${admission.ingestion.min-concurrency:1}")
+    private int ingestionMinConcurrency;
+
+    @Value("${admission.ingestion.max-concurrency:2}")
+    private int ingestionMaxConcurrency;
+
+    @Value("${admission.ingestion.queue-size:4}")
+    private int ingestionQueueSize;
+
+    @Value("${admission.ingestion.max-wait-ms:2000}")
+    private long ingestionMaxWaitMs;
+
+    @Value("${admission.ingestion.target-latency-ms:0}")
+    private long ingestionTargetLatencyMs;
+
+    @Value("${admission.query.min-concurrency:2}")
+    private int queryMinConcurrency;
+
+    @Value("${admission.query.max-concurrency:8}")
+    private int queryMaxConcurrency;
+
+    @Value("${admission.query.queue-size:16}")
+    private int queryQueueSize;
+
+    @Value("${admission.query.max-wait-ms:1000}")
+    private long queryMaxWaitMs;
+
+    @Value("${admission.query.target-latency-ms:0}")
+    private long queryTargetLatencyMs;
+
+    @Bean
+    public AdaptiveConcurrencyLimiter ingestionLimiter() {
+        return new AdaptiveConcurrencyLimiter("ingestion",
+                ingestionMinConcurrency,
+                ingestionMaxConcurrency,
+                ingestionQueueSize,
+                Duration.ofMillis(ingestionMaxWaitMs),
+                Duration.ofMillis(ingestionTargetLatencyMs));
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter queryLimiter() {
+        return new AdaptiveConcurrencyLimiter("query",
+                queryMinConcurrency,
+                queryMaxConcurrency,
+                queryQueueSize,
+                Duration.ofMillis(queryMaxWaitMs),
+                Duration.ofMillis(queryTargetLatencyMs));
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> ingestionAdmissionFilter() {
+        return admissionFilter(new AdmissionControlFilter(ingestionLimiter(), retryAfterSeconds,
+                Set.of("POST", "PUT"),
+                List.of("/upload", "/documents", "/documents/*", "/documents/chunking/compare")));
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> queryAdmissionFilter() {
+        return admissionFilter(new AdmissionControlFilter(queryLimiter(), retryAfterSeconds,
+                Set.of("GET"),
+                List.of("/", "/jira")));
+    }
+
+    private FilterRegistrationBean<AdmissionControlFilter> admissionFilter(AdmissionControlFilter filter) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(FILTER_ORDER);
+        return registration;
+    }
+}
@@ -0,0 +1,76 @@
+package springia.ragollamapdf.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import springia.ragollamapdf.resilience.CircuitBreaker;
+import springia.ragollamapdf.resilience.RetryBudget;
+
+import java.time.Duration;
+
+@Configuration
+public class ResilienceConfig {
+
+    @Value("${resilience.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${resilience.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${resilience.max-attempts:2}")
+    private int maxAttempts;
+
+    @Value("${resilience.retry-budget.ratio:0.1}")
+    private double retryRatio;
+
+    @Value("${resilience.retry-budget.max-tokens:10}")
+    private double retryMaxTokens;
+
+    @Value("${resilience.chat.timeout-ms:60000}")
+    private long chatTimeoutMs;
+
+    @Value("${resilience.embedding.timeout-ms:120000}")
+    private long embeddingTimeoutMs;
+
+    @Value("${resilience.jira.timeout-ms:10000}")
+    private long jiraTimeoutMs;
+
+    @Value("${resilience.chat.max-concurrency:8}")
+    private int chatMaxConcurrency;
+
+    @Value("${resilience.embedding.max-concurrency:4}")
+    private int embeddingMaxConcurrency;
+
+    @Value("${resilience.jira.max-concurrency:8}")
+    private int jiraMaxConcurrency;
+
+    @Bean
+    public RetryBudget retryBudget() {
+        return new RetryBudget(retryRatio, retryMaxTokens);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public CircuitBreaker chatCircuitBreaker(RetryBudget retryBudget) {
+        return newBreaker("chat", chatTimeoutMs, chatMaxConcurrency, retryBudget);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public CircuitBreaker embeddingCircuitBreaker(RetryBudget retryBudget) {
+        return newBreaker("embedding", embeddingTimeoutMs, embeddingMaxConcurrency, retryBudget);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public CircuitBreaker jiraCircuitBreaker(RetryBudget retryBudget) {
+        return newBreaker("jira", jiraTimeoutMs, jiraMaxConcurrency, retryBudget);
+    }
+
+    private CircuitBreaker newBreaker(String name, long timeoutMs, int maxConcurrency, RetryBudget retryBudget) {
+        return new CircuitBreaker(name,
+                failureThreshold,
+                Duration.ofMillis(openDurationMs),
+                Duration.ofMillis(timeoutMs),
+                maxAttempts,
+                maxConcurrency,
+                retryBudget);
+    }
+}
@@ -0,0 +1,70 @@
+package springia.ragollamapdf.controllers;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import springia.ragollamapdf.service.DocumentService;
+import springia.ragollamapdf.service.IndexMaintenanceService;
+import springia.ragollamapdf.service.PdfService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/documents")
+public class DocumentController {
+
+    private final DocumentService documentService;
+    private final IndexMaintenanceService maintenanceService;
+    private final PdfService pdfService;
+
+    public DocumentController(DocumentService documentService,
+                              IndexMaintenanceService maintenanceService,
+                              PdfService pdfService) {
+        this.documentService = documentService;
+        this.maintenanceService = maintenanceService;
+        this.pdfService = pdfService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> listDocuments() {
+        return ResponseEntity.ok(documentService.listDocuments());
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<String> addDocument(@RequestParam("file") MultipartFile file,
+                                              @RequestParam(value = "ttlHours", required = false) Long ttlHours) throws IOException {
+        return ResponseEntity.ok(documentService.addDocument(file, ttlHours));
+    }
+
+    @PutMapping(value = "/{documentId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Integer> replaceDocument(@PathVariable String documentId,
+                                                   @RequestParam("file") MultipartFile file,
+                                                   @RequestParam(value = "ttlHours", required = false) Long ttlHours) throws IOException {
+        if (!documentService.exists(documentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(documentService.replaceDocument(documentId, file, ttlHours));
+    }
+
+    @DeleteMapping("/{documentId}")
+    public ResponseEntity<Void> deleteDocument(@PathVariable String documentId) {
+        if (!documentService.exists(documentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        documentService.scheduleDelete(documentId);
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/maintenance/stats")
+    public ResponseEntity<Map<String, Object>> getMaintenanceStats() {
+        return ResponseEntity.ok(maintenanceService.getStats());
+    }
+
+    @PostMapping(value = "/chunking/compare", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> compareChunking(@RequestParam("file") MultipartFile file) throws IOException {
+        return ResponseEntity.ok(pdfService.compareChunking(file));
+    }
+}
@@ -0,0 +1,25 @@
+package springia.ragollamapdf.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import springia.ragollamapdf.service.ChatService;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    private final ChatService chatService;
+
+    public MetricsController(ChatService chatService) {
+        this.chatService = chatService;
+    }
+
+    @GetMapping("/chat-tiers")
+    public ResponseEntity<Map<String, Object>> getChatTierMetrics() {
+        return ResponseEntity.ok(chatService.getTierMetrics());
+    }
+}
@@ -2,8 +2,8 @@ package springia.ragollamapdf.controllers;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,6 +12,11 @@ import org.springframework.web.bind.annotation.RestController;
 
 import org.springframework.ai.document.Document;
 import org.springframework.web.multipart.MultipartFile;
+import springia.ragollamapdf.resilience.BackendUnavailableException;
+import springia.ragollamapdf.resilience.CircuitBreaker;
+import springia.ragollamapdf.resilience.RequestOutcome;
+import springia.ragollamapdf.service.ChatService;
+import springia.ragollamapdf.service.ChatTask;
 import springia.ragollamapdf.service.PdfService;
 import springia.ragollamapdf.service.JiraIntegrationService;
 
@@ -22,21 +27,32 @@ import java.util.stream.Collectors;
 public class PdfVectorController {
     private static final Logger logger = LoggerFactory.getLogger(PdfVectorController.class);
 
+    // Static fallbacks: the error path must never generate extra model traffic
+    private static final String UNAVAILABLE_RESPONSE =
+            "The assistant is temporarily unavailable because a backend service is overloaded or down. Please try again in a moment.";
+    private static final String ERROR_RESPONSE =
+            "Sorry, something went wrong while processing your request. Please try again later.";
+    private static final String UPLOAD_ERROR_RESPONSE =
+            "Sorry, the PDF could not be processed. Please check the file and try again later.";
+
     private final VectorStore vectorStore;
-    private final ChatModel chatModel;
+    private final ChatService chatService;
     private final PdfService pdfService;
     private final JiraIntegrationService jiraService;
+    private final CircuitBreaker embeddingCircuitBreaker;
 
     public PdfVectorController(
             VectorStore vectorStore,
-            ChatModel chatModel,
+            ChatService chatService,
             PdfService pdfService,
-            JiraIntegrationService jiraService
+            JiraIntegrationService jiraService,
+            @Qualifier("embeddingCircuitBreaker") CircuitBreaker embeddingCircuitBreaker
     ) {
         this.vectorStore = vectorStore;
-        this.chatModel = chatModel;
+        this.chatService = chatService;
         this.pdfService = pdfService;
         this.jiraService = jiraService;
+        this.embeddingCircuitBreaker = embeddingCircuitBreaker;
     }
 
     @GetMapping("/")
@@ -47,7 +63,7 @@ public class PdfVectorController {
             // First, check if this is a simple chat message or greeting
             if (isSimpleInteraction(question)) {
                 logger.info("Processing as simple interaction");
-                return chatModel.call(question);
+                return chatService.call(ChatTask.GREETING, question);
             }
 
             // Next, check if this might be a Jira-related question
@@ -58,12 +74,12 @@ public class PdfVectorController {
 
             // Otherwise, treat as a document query
             logger.info("Processing as document query");
-            List<Document> documents = vectorStore.similaritySearch(question);
+            List<Document> documents = embeddingCircuitBreaker.execute(() -> vectorStore.similaritySearch(question));
 
             // If we have no documents, just use Ollama directly
             if (documents == null || documents.isEmpty()) {
                 logger.info("No relevant documents found, using direct LLM response");
-                return chatModel.call(question);
+                return chatService.call(ChatTask.GENERAL, question);
             }
 
             // Extract document text
@@ -84,20 +100,18 @@ public class PdfVectorController {
             );
 
             // Call the chat model with the full prompt
-            String response = chatModel.call(fullPrompt);
+            String response = chatService.call(ChatTask.RAG, fullPrompt);
 
             logger.info("Generated Response length: {}", response.length());
             return response;
 
+        } catch (BackendUnavailableException e) {
+            RequestOutcome.recordBackendFailure();
+            logger.warn("Backend unavailable, returning fallback: {}", e.getMessage());
+            return UNAVAILABLE_RESPONSE;
         } catch (Exception e) {
             logger.error("Error processing request", e);
-            // Forward the error to Ollama for appropriate response
-            String errorPrompt = String.format(
-                    "There was an error processing the request: %s. Please provide a helpful response to the user's question: %s",
-                    e.getMessage(),
-                    question
-            );
-            return chatModel.call(errorPrompt);
+            return ERROR_RESPONSE;
         }
     }
 
@@ -109,15 +123,13 @@ public class PdfVectorController {
             // Process the uploaded PDF and store in vector database
             String response = pdfService.processPdfAndAnswerQuestion(file, question);
             return response;
+        } catch (BackendUnavailableException e) {
+            RequestOutcome.recordBackendFailure();
+            logger.warn("Backend unavailable during PDF upload, returning fallback: {}", e.getMessage());
+            return UNAVAILABLE_RESPONSE;
         } catch (Exception e) {
             logger.error("Error processing PDF upload", e);
-            // Forward the error to Ollama for appropriate response
-            String errorPrompt = String.format(
-                    "There was an error processing the PDF upload: %s. Please provide a helpful response to the user's question: %s",
-                    e.getMessage(),
-                    question
-            );
-            return chatModel.call(errorPrompt);
+            return UPLOAD_ERROR_RESPONSE;
         }
     }
 
@@ -126,15 +138,13 @@ public class PdfVectorController {
         try {
             logger.info("Processing direct Jira query: {}", question);
             return jiraService.processQuery(question);
+        } catch (BackendUnavailableException e) {
+            RequestOutcome.recordBackendFailure();
+            logger.warn("Backend unavailable during Jira query, returning fallback: {}", e.getMessage());
+            return UNAVAILABLE_RESPONSE;
         } catch (Exception e) {
             logger.error("Error processing Jira query", e);
-            // Forward the error to Ollama for appropriate response
-            String errorPrompt = String.format(
-                    "There was an error processing the Jira query: %s. Please provide a helpful response to the user's question: %s",
-                    e.getMessage(),
-                    question
-            );
-            return chatModel.call(errorPrompt);
+            return ERROR_RESPONSE;
         }
     }
 
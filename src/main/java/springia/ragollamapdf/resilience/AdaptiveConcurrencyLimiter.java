@@ -0,0 +1,146 @@
+package springia.ragollamapdf.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit with a bounded wait queue for one class of requests.
+ * <p>
+ * When {@code targetLatency} is set the limit adapts (AIMD): it grows by one after a
+ * fast request that used the available capacity and shrinks multiplicatively when a
+ * request is slower than the target or fails, so the number of requests sent to
+ * Ollama and pgvector follows what the backends can actually absorb.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final Duration targetLatency;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private int limit;
+    private int inFlight;
+    private int waiting;
+
+    public AdaptiveConcurrencyLimiter(String name,
+                                      int minLimit,
+                                      int maxLimit,
+                                      int maxQueue,
+                                      Duration maxWait,
+                                      Duration targetLatency) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWait = maxWait;
+        this.targetLatency = targetLatency;
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Takes a slot, waiting up to {@code maxWait} if the queue has room.
+     *
+     * @return false if the request should be shed
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < limit) {
+                inFlight++;
+                return true;
+            }
+            if (waiting >= maxQueue) {
+                return false;
+            }
+
+            waiting++;
+            try {
+                long remainingNanos = maxWait.toNanos();
+                while (inFlight >= limit) {
+                    if (remainingNanos <= 0) {
+                        return false;
+                    }
+                    remainingNanos = released.awaitNanos(remainingNanos);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a slot and feeds the observed latency into the adaptive limit.
+     */
+    public void release(long latencyNanos, boolean success) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit;
+            inFlight--;
+
+            if (!targetLatency.isZero()) {
+                int previous = limit;
+                if (!success || latencyNanos > targetLatency.toNanos()) {
+                    limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+                } else if (saturated) {
+                    limit = Math.min(maxLimit, limit + 1);
+                }
+                if (limit != previous) {
+                    logger.debug("Admission limit '{}' {} -> {} (latency {} ms)",
+                            name, previous, limit, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+                }
+            }
+
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
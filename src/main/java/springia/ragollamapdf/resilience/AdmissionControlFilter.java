@@ -0,0 +1,87 @@
+package springia.ragollamapdf.resilience;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sheds load with 429 + Retry-After once the limiter for an endpoint group is full.
+ * Only requests matching one of the methods and one of the path patterns are limited.
+ * <p>
+ * Runs as a servlet filter, ahead of the DispatcherServlet, so a shed upload is rejected
+ * before its multipart body is read. A request counts as failed for the adaptive limit
+ * when it ends with a 5xx or an exception, or when a handler answered with a fallback
+ * after a backend failure (see {@link RequestOutcome}).
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final long retryAfterSeconds;
+    private final Set<String> methods;
+    private final List<String> pathPatterns;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public AdmissionControlFilter(AdaptiveConcurrencyLimiter limiter,
+                                  long retryAfterSeconds,
+                                  Set<String> methods,
+                                  List<String> pathPatterns) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.methods = Set.copyOf(methods);
+        this.pathPatterns = List.copyOf(pathPatterns);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!methods.contains(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return pathPatterns.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean admitted;
+        try {
+            admitted = limiter.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+
+        if (!admitted) {
+            logger.warn("Shedding {} request to {} (limit {}, in flight {}, waiting {})",
+                    limiter.getName(), request.getRequestURI(),
+                    limiter.getLimit(), limiter.getInFlight(), limiter.getWaiting());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("The server is busy, please retry in " + retryAfterSeconds + " seconds.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            chain.doFilter(request, response);
+            success = response.getStatus() < 500 && !RequestOutcome.hadBackendFailure(request);
+        } finally {
+            limiter.release(System.nanoTime() - start, success);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package springia.ragollamapdf.resilience;
+
+/**
+ * Raised when a backend call is rejected by its circuit breaker, times out or fails.
+ */
+public class BackendUnavailableException extends RuntimeException {
+
+    private final String backend;
+
+    public BackendUnavailableException(String backend, String message) {
+        super(backend + ": " + message);
+        this.backend = backend;
+    }
+
+    public BackendUnavailableException(String backend, String message, Throwable cause) {
+        super(backend + ": " + message, cause);
+        this.backend = backend;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+}
@@ -0,0 +1,12 @@
+package springia.ragollamapdf.resilience;
+
+/**
+ * Raised without calling the backend: the circuit is open or its call slots are all busy.
+ * Such a rejection is not a backend failure and should not be counted as an attempt.
+ */
+public class CallNotPermittedException extends BackendUnavailableException {
+
+    public CallNotPermittedException(String backend, String message) {
+        super(backend, message);
+    }
+}
@@ -0,0 +1,25 @@
+package springia.ragollamapdf.resilience;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Raised when a backend call did not answer in time. The call is abandoned, not stopped:
+ * it may still complete on the backend, so callers that undo its effects must do it again
+ * once {@link #whenAbandonedCallEnds(Runnable)} fires.
+ */
+public class CallTimeoutException extends BackendUnavailableException {
+
+    private final transient CompletableFuture<Void> abandonedCall;
+
+    public CallTimeoutException(String backend, String message, Throwable cause, CompletableFuture<Void> abandonedCall) {
+        super(backend, message, cause);
+        this.abandonedCall = abandonedCall;
+    }
+
+    /**
+     * Runs the action once the abandoned call has returned or failed on its worker thread.
+     */
+    public void whenAbandonedCallEnds(Runnable action) {
+        abandonedCall.whenComplete((ignored, error) -> action.run());
+    }
+}
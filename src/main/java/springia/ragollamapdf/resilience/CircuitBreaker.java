@@ -0,0 +1,219 @@
+package springia.ragollamapdf.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker guarding a single backend (chat model, embeddings, Jira).
+ * <p>
+ * Each call runs with a timeout on a pool bounded to {@code maxConcurrency}; when every
+ * slot is taken (including by calls abandoned after a timeout) new calls are rejected
+ * immediately instead of piling more load on the backend. After {@code failureThreshold}
+ * consecutive transient failures the breaker opens and rejects calls for
+ * {@code openDuration}; then a single trial call is let through (half-open) to decide
+ * whether to close again.
+ * <p>
+ * Only transient errors (see {@link TransientErrors}) count as failures. Caller errors
+ * such as a 4xx are rethrown unchanged. Connection failures and 5xx are retried while the
+ * breaker is closed and the shared {@link RetryBudget} allows it, unless the action is
+ * not idempotent. Timeouts are never retried since the abandoned call is still running on
+ * the backend; the {@link CallTimeoutException} tells when it has really ended.
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Duration timeout;
+    private final int maxAttempts;
+    private final RetryBudget retryBudget;
+    private final ThreadPoolExecutor executor;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name,
+                          int failureThreshold,
+                          Duration openDuration,
+                          Duration timeout,
+                          int maxAttempts,
+                          int maxConcurrency,
+                          RetryBudget retryBudget) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.timeout = timeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBudget = retryBudget;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, Math.max(1, maxConcurrency), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-call-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs an idempotent action through the breaker, retrying transient failures within
+     * the budget.
+     *
+     * @throws CallNotPermittedException if the breaker is open or all call slots are busy
+     * @throws CallTimeoutException if the backend did not answer in time
+     * @throws BackendUnavailableException if the backend kept failing
+     * @throws RuntimeException the action's own exception when it is not transient
+     */
+    public <T> T execute(Supplier<T> action) {
+        return execute(action, true);
+    }
+
+    /**
+     * Runs the action through the breaker; an action that is not idempotent (creating an
+     * issue, adding a comment) is attempted only once.
+     */
+    public <T> T execute(Supplier<T> action, boolean idempotent) {
+        retryBudget.recordRequest();
+        BackendUnavailableException lastFailure = null;
+        int attempts = idempotent ? maxAttempts : 1;
+
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            if (!tryAcquirePermission()) {
+                throw lastFailure != null ? lastFailure : new CallNotPermittedException(name, "circuit open");
+            }
+
+            FutureTask<T> future = new FutureTask<>(action::get);
+            // Completes when the worker thread is done with the call, even after a timeout
+            CompletableFuture<Void> ended = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        future.run();
+                    } finally {
+                        ended.complete(null);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                releasePermission();
+                throw new CallNotPermittedException(name, "all " + executor.getMaximumPoolSize() + " call slots busy");
+            }
+
+            try {
+                T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                onSuccess();
+                return result;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                onFailure();
+                // The backend is still working on the abandoned call, a retry would only add load
+                throw new CallTimeoutException(name, "timed out after " + timeout.toMillis() + " ms", e, ended);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                releasePermission();
+                Thread.currentThread().interrupt();
+                throw new BackendUnavailableException(name, "interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (!TransientErrors.isTransient(cause)) {
+                    // The backend answered, the request itself was wrong
+                    onSuccess();
+                    if (cause instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    }
+                    if (cause instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+                onFailure();
+                lastFailure = new BackendUnavailableException(name, String.valueOf(cause.getMessage()), cause);
+            }
+
+            if (attempt < attempts && (getState() != State.CLOSED || !retryBudget.tryAcquireRetry())) {
+                logger.debug("Not retrying {}: circuit {} or retry budget exhausted", name, getState());
+                break;
+            }
+        }
+        throw lastFailure;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAtMillis < openDuration.toMillis()) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                trialInFlight = true;
+                return true;
+            case HALF_OPEN:
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    private synchronized void releasePermission() {
+        trialInFlight = false;
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            openedAtMillis = System.currentTimeMillis();
+            if (state != State.OPEN) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    private void transitionTo(State newState) {
+        logger.warn("Circuit breaker '{}' {} -> {}", name, state, newState);
+        state = newState;
+    }
+}
@@ -0,0 +1,31 @@
+package springia.ragollamapdf.resilience;
+
+import jakarta.servlet.ServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Lets request handlers report a backend failure that they turned into a normal fallback
+ * answer, so admission control still sees the request as failed.
+ */
+public final class RequestOutcome {
+
+    private static final String BACKEND_FAILURE_ATTRIBUTE = RequestOutcome.class.getName() + ".backendFailure";
+
+    private RequestOutcome() {
+    }
+
+    /**
+     * Marks the current HTTP request, if any, as having hit an unavailable backend.
+     */
+    public static void recordBackendFailure() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(BACKEND_FAILURE_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    static boolean hadBackendFailure(ServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(BACKEND_FAILURE_ATTRIBUTE));
+    }
+}
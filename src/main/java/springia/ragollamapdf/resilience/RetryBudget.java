@@ -0,0 +1,32 @@
+package springia.ragollamapdf.resilience;
+
+/**
+ * Token bucket limiting retries to a fraction of the observed request rate.
+ * Every request deposits {@code ratio} tokens and every retry withdraws one, so
+ * when a backend is failing across the board retries stay bounded instead of
+ * multiplying the load.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    public RetryBudget(double ratio, double maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void recordRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryAcquireRetry() {
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+}
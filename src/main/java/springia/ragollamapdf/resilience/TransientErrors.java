@@ -0,0 +1,41 @@
+package springia.ragollamapdf.resilience;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tells backend outages (timeouts, connection failures, 5xx) apart from caller errors (4xx).
+ * Only the former should open a circuit or be retried.
+ */
+public final class TransientErrors {
+
+    private TransientErrors() {
+    }
+
+    public static boolean isTransient(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof NonTransientAiException || current instanceof HttpClientErrorException) {
+                return false;
+            }
+            if (current instanceof RestClientException jiraError) {
+                // No status code means the request never got an HTTP response
+                return !jiraError.getStatusCode().isPresent() || jiraError.getStatusCode().get() >= 500;
+            }
+            if (current instanceof TransientAiException
+                    || current instanceof HttpServerErrorException
+                    || current instanceof ResourceAccessException
+                    || current instanceof TimeoutException
+                    || current instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,100 @@
+package springia.ragollamapdf.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import springia.ragollamapdf.resilience.CircuitBreaker;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Single entry point for chat model calls, guarded by the chat circuit breaker.
+ * <p>
+ * Calls are routed to a model tier by task type: greetings and JQL synthesis go to the
+ * small model unless the prompt is too large for it, open-ended answers and document
+ * synthesis always go to the large one.
+ */
+@Service
+public class ChatService {
+    private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
+
+    private final ChatModel chatModel;
+    private final CircuitBreaker chatCircuitBreaker;
+    private final Map<ChatTier, String> models = new EnumMap<>(ChatTier.class);
+    private final Map<ChatTier, ChatTierMetrics> metrics = new EnumMap<>(ChatTier.class);
+    private final int smallMaxPromptChars;
+
+    public ChatService(ChatModel chatModel,
+                       @Qualifier("chatCircuitBreaker") CircuitBreaker chatCircuitBreaker,
+                       @Value("${chat.tiers.small.model}") String smallModel,
+                       @Value("${chat.tiers.large.model}") String largeModel,
+                       @Value("${chat.routing.small-max-prompt-chars:2000}") int smallMaxPromptChars) {
+        this.chatModel = chatModel;
+        this.chatCircuitBreaker = chatCircuitBreaker;
+        this.smallMaxPromptChars = smallMaxPromptChars;
+        models.put(ChatTier.SMALL, smallModel);
+        models.put(ChatTier.LARGE, largeModel);
+        models.forEach((tier, model) -> metrics.put(tier, new ChatTierMetrics(model)));
+    }
+
+    /**
+     * Calls the chat model of the tier selected for this task, with a timeout.
+     *
+     * @throws springia.ragollamapdf.resilience.BackendUnavailableException if the model is unavailable
+     */
+    public String call(ChatTask task, String prompt) {
+        ChatTier tier = route(task, prompt);
+        String model = models.get(tier);
+        ChatTierMetrics tierMetrics = metrics.get(tier);
+        logger.debug("Routing {} task ({} chars) to {} model {}", task, prompt.length(), tier, model);
+
+        Prompt request = new Prompt(prompt, OllamaOptions.builder().model(model).build());
+        long start = System.currentTimeMillis();
+        try {
+            ChatResponse response = chatCircuitBreaker.execute(() -> chatModel.call(request));
+            recordUsage(tierMetrics, response, System.currentTimeMillis() - start);
+            return response.getResult().getOutput().getText();
+        } catch (RuntimeException e) {
+            tierMetrics.recordFailure(System.currentTimeMillis() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Latency and token usage per tier, for tuning the routing.
+     */
+    public Map<String, Object> getTierMetrics() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        metrics.forEach((tier, tierMetrics) -> snapshot.put(tier.name().toLowerCase(), tierMetrics.snapshot()));
+        return snapshot;
+    }
+
+    ChatTier route(ChatTask task, String prompt) {
+        if (task.getPreferredTier() == ChatTier.SMALL && prompt.length() > smallMaxPromptChars) {
+            return ChatTier.LARGE;
+        }
+        return task.getPreferredTier();
+    }
+
+    private void recordUsage(ChatTierMetrics tierMetrics, ChatResponse response, long latencyMs) {
+        long promptTokens = 0;
+        long totalTokens = 0;
+        if (response.getMetadata() != null && response.getMetadata().getUsage() != null) {
+            Usage usage = response.getMetadata().getUsage();
+            Number prompt = usage.getPromptTokens();
+            Number total = usage.getTotalTokens();
+            promptTokens = prompt != null ? prompt.longValue() : 0;
+            totalTokens = total != null ? total.longValue() : 0;
+        }
+        tierMetrics.recordSuccess(latencyMs, promptTokens, totalTokens);
+    }
+}
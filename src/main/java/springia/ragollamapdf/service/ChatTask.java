@@ -0,0 +1,21 @@
+package springia.ragollamapdf.service;
+
+/**
+ * Kind of work a chat call performs, used to pick a {@link ChatTier}.
+ */
+public enum ChatTask {
+    GREETING(ChatTier.SMALL),
+    JQL(ChatTier.SMALL),
+    GENERAL(ChatTier.LARGE),
+    RAG(ChatTier.LARGE);
+
+    private final ChatTier preferredTier;
+
+    ChatTask(ChatTier preferredTier) {
+        this.preferredTier = preferredTier;
+    }
+
+    public ChatTier getPreferredTier() {
+        return preferredTier;
+    }
+}
@@ -0,0 +1,9 @@
+package springia.ragollamapdf.service;
+
+/**
+ * Chat model tiers: a small quantized model for cheap tasks, the large model for RAG synthesis.
+ */
+public enum ChatTier {
+    SMALL,
+    LARGE
+}
@@ -0,0 +1,52 @@
+package springia.ragollamapdf.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Per-tier call counters, latency and token usage.
+ */
+public class ChatTierMetrics {
+
+    private final String model;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+    private final LongAccumulator maxLatencyMs = new LongAccumulator(Math::max, 0);
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong totalTokens = new AtomicLong();
+
+    public ChatTierMetrics(String model) {
+        this.model = model;
+    }
+
+    public void recordSuccess(long latencyMs, long prompt, long total) {
+        calls.incrementAndGet();
+        totalLatencyMs.addAndGet(latencyMs);
+        maxLatencyMs.accumulate(latencyMs);
+        promptTokens.addAndGet(prompt);
+        totalTokens.addAndGet(total);
+    }
+
+    public void recordFailure(long latencyMs) {
+        calls.incrementAndGet();
+        failures.incrementAndGet();
+        totalLatencyMs.addAndGet(latencyMs);
+        maxLatencyMs.accumulate(latencyMs);
+    }
+
+    public Map<String, Object> snapshot() {
+        long callCount = calls.get();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("model", model);
+        snapshot.put("calls", callCount);
+        snapshot.put("failures", failures.get());
+        snapshot.put("avgLatencyMs", callCount == 0 ? 0 : totalLatencyMs.get() / callCount);
+        snapshot.put("maxLatencyMs", maxLatencyMs.get());
+        snapshot.put("promptTokens", promptTokens.get());
+        snapshot.put("generationTokens", totalTokens.get() - promptTokens.get());
+        return snapshot;
+    }
+}
@@ -0,0 +1,175 @@
+package springia.ragollamapdf.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Document-level view over the chunks stored in the vector store.
+ * <p>
+ * Chunks are grouped by their {@code document_id} metadata, which is indexed along with
+ * {@code expires_at}. Delete requests are
+ * persisted in {@code document_delete_request} and applied in batches by
+ * {@link IndexMaintenanceService}; a batch only removes chunks ingested before the
+ * delete was requested, so a newer version of the document is never wiped. Replacing
+ * a document writes the new chunks before removing the old ones so it never
+ * disappears from search. Every timestamp comes from the database clock so the ordering
+ * holds across replicas. Documents with a TTL are tracked in {@code document_expiry} so the
+ * expiry sweep only touches the vector store when something is due.
+ */
+@Service
+public class DocumentService {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PdfService pdfService;
+    private final String tableName;
+    private final String liveChunkFilter;
+
+    public DocumentService(JdbcTemplate jdbcTemplate,
+                           PdfService pdfService,
+                           @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
+        if (!tableName.matches("[A-Za-z_][A-Za-z0-9_.]*")) {
+            throw new IllegalArgumentException("Invalid vector store table name: " + tableName);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.pdfService = pdfService;
+        this.tableName = tableName;
+        // Chunks of a document whose deletion is requested but not applied yet are hidden
+        this.liveChunkFilter = "NOT EXISTS (SELECT 1 FROM document_delete_request r " +
+                "WHERE r.document_id = v.metadata->>'" + PdfService.DOCUMENT_ID_KEY + "' " +
+                "AND (v.metadata->>'" + PdfService.INGESTED_AT_KEY + "')::bigint < r.requested_at)";
+    }
+
+    @PostConstruct
+    public void initSchema() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS document_delete_request (" +
+                "document_id text PRIMARY KEY, " +
+                "requested_at bigint NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS document_expiry (" +
+                "document_id text NOT NULL, " +
+                "ingested_at bigint NOT NULL, " +
+                "expires_at bigint NOT NULL, " +
+                "PRIMARY KEY (document_id, ingested_at))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS document_expiry_expires_at_idx ON document_expiry (expires_at)");
+
+        String indexPrefix = tableName.substring(tableName.lastIndexOf('.') + 1);
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + indexPrefix + "_document_id_idx ON " + tableName +
+                " ((metadata->>'" + PdfService.DOCUMENT_ID_KEY + "'))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + indexPrefix + "_expires_at_idx ON " + tableName +
+                " (((metadata->>'" + PdfService.EXPIRES_AT_KEY + "')::bigint)) " +
+                "WHERE metadata->>'" + PdfService.EXPIRES_AT_KEY + "' IS NOT NULL");
+    }
+
+    public List<Map<String, Object>> listDocuments() {
+        return jdbcTemplate.queryForList(
+                "SELECT v.metadata->>'" + PdfService.DOCUMENT_ID_KEY + "' AS document_id, " +
+                        "MAX(v.metadata->>'" + PdfService.FILE_NAME_KEY + "') AS file_name, " +
+                        "COUNT(*) AS chunks, " +
+                        "MIN((v.metadata->>'" + PdfService.INGESTED_AT_KEY + "')::bigint) AS ingested_at, " +
+                        "MIN((v.metadata->>'" + PdfService.EXPIRES_AT_KEY + "')::bigint) AS expires_at " +
+                        "FROM " + tableName + " v " +
+                        "WHERE v.metadata->>'" + PdfService.DOCUMENT_ID_KEY + "' IS NOT NULL AND " + liveChunkFilter + " " +
+                        "GROUP BY 1 ORDER BY 4 DESC");
+    }
+
+    public boolean exists(String documentId) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + tableName + " v " +
+                        "WHERE v.metadata->>'" + PdfService.DOCUMENT_ID_KEY + "' = ? AND " + liveChunkFilter + ")",
+                Boolean.class, documentId);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    public String addDocument(MultipartFile file, Long ttlHours) throws IOException {
+        String documentId = UUID.randomUUID().toString();
+        pdfService.ingestPdf(file, documentId, ttlHours);
+        return documentId;
+    }
+
+    /**
+     * Ingests the new version first, then removes the chunks of the previous one.
+     */
+    public int replaceDocument(String documentId, MultipartFile file, Long ttlHours) throws IOException {
+        long cutoff = pdfService.currentTimeMillis();
+        int chunks = pdfService.ingestPdf(file, documentId, ttlHours);
+        int removed = jdbcTemplate.update(
+                "DELETE FROM " + tableName + " WHERE metadata->>'" + PdfService.DOCUMENT_ID_KEY + "' = ? " +
+                        "AND (metadata->>'" + PdfService.INGESTED_AT_KEY + "')::bigint < ?",
+                documentId, cutoff);
+        logger.info("Replaced document {}: {} new chunks, {} old chunks removed", documentId, chunks, removed);
+        return chunks;
+    }
+
+    /**
+     * Records a delete request, applied to every chunk ingested before now by the next
+     * maintenance run on any replica.
+     */
+    public void scheduleDelete(String documentId) {
+        jdbcTemplate.update(
+                "INSERT INTO document_delete_request (document_id, requested_at) " +
+                        "VALUES (?, " + PdfService.DATABASE_NOW_MILLIS + ") " +
+                        "ON CONFLICT (document_id) DO UPDATE SET requested_at = EXCLUDED.requested_at",
+                documentId);
+    }
+
+    public int getPendingDeleteCount() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM document_delete_request", Integer.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Applies all delete requests in a single statement, consuming the requests.
+     *
+     * @return the number of chunks removed
+     */
+    public int flushPendingDeletes() {
+        int removed = jdbcTemplate.update(
+                "WITH requests AS (DELETE FROM document_delete_request RETURNING document_id, requested_at) " +
+                        "DELETE FROM " + tableName + " v USING requests r " +
+                        "WHERE v.metadata->>'" + PdfService.DOCUMENT_ID_KEY + "' = r.document_id " +
+                        "AND (v.metadata->>'" + PdfService.INGESTED_AT_KEY + "')::bigint < r.requested_at");
+        if (removed > 0) {
+            logger.info("Deleted {} chunks of removed documents", removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes chunks whose TTL has elapsed. Does nothing unless a tracked expiry is due.
+     *
+     * @return the number of chunks removed
+     */
+    public int deleteExpired() {
+        List<Long> due = jdbcTemplate.queryForList(
+                "SELECT " + PdfService.DATABASE_NOW_MILLIS + " WHERE EXISTS " +
+                        "(SELECT 1 FROM document_expiry WHERE expires_at < " + PdfService.DATABASE_NOW_MILLIS + ")",
+                Long.class);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        long now = due.get(0);
+        int removed = jdbcTemplate.update(
+                "DELETE FROM " + tableName + " WHERE metadata->>'" + PdfService.EXPIRES_AT_KEY + "' IS NOT NULL " +
+                        "AND (metadata->>'" + PdfService.EXPIRES_AT_KEY + "')::bigint < ?",
+                now);
+        jdbcTemplate.update("DELETE FROM document_expiry WHERE expires_at < ?", now);
+        if (removed > 0) {
+            logger.info("Expired {} chunks", removed);
+        }
+        return removed;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+}
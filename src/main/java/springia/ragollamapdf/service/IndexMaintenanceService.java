@@ -0,0 +1,164 @@
+package springia.ragollamapdf.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import springia.ragollamapdf.resilience.AdaptiveConcurrencyLimiter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background upkeep of the vector store: applies queued and TTL deletes in batches,
+ * then vacuums and rebuilds the HNSW index while no request is being served and no
+ * replica is ingesting. A Postgres advisory lock lets a single replica run the upkeep.
+ */
+@Service
+public class IndexMaintenanceService {
+    private static final Logger logger = LoggerFactory.getLogger(IndexMaintenanceService.class);
+
+    private final DocumentService documentService;
+    private final IngestionQueueService ingestionQueueService;
+    private final JdbcTemplate jdbcTemplate;
+    private final AdaptiveConcurrencyLimiter ingestionLimiter;
+    private final AdaptiveConcurrencyLimiter queryLimiter;
+    private final long vacuumMinDeletes;
+    private final double reindexDeletedRatio;
+
+    private final AtomicLong deletedSinceVacuum = new AtomicLong();
+    private final AtomicLong deletedSinceReindex = new AtomicLong();
+
+    public IndexMaintenanceService(DocumentService documentService,
+                                   IngestionQueueService ingestionQueueService,
+                                   JdbcTemplate jdbcTemplate,
+                                   @Qualifier("ingestionLimiter") AdaptiveConcurrencyLimiter ingestionLimiter,
+                                   @Qualifier("queryLimiter") AdaptiveConcurrencyLimiter queryLimiter,
+                                   @Value("${maintenance.vacuum-min-deletes:1000}") long vacuumMinDeletes,
+                                   @Value("${maintenance.reindex-deleted-ratio:0.2}") double reindexDeletedRatio) {
+        this.documentService = documentService;
+        this.ingestionQueueService = ingestionQueueService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ingestionLimiter = ingestionLimiter;
+        this.queryLimiter = queryLimiter;
+        this.vacuumMinDeletes = vacuumMinDeletes;
+        this.reindexDeletedRatio = reindexDeletedRatio;
+    }
+
+    @Scheduled(fixedDelayString = "${maintenance.delete-interval-ms:10000}")
+    public void processDeletes() {
+        try {
+            long removed = documentService.flushPendingDeletes() + documentService.deleteExpired();
+            deletedSinceVacuum.addAndGet(removed);
+            deletedSinceReindex.addAndGet(removed);
+        } catch (Exception e) {
+            logger.error("Error applying document deletes", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${maintenance.vacuum-interval-ms:300000}")
+    public void maintainIndex() {
+        if (deletedSinceVacuum.get() < vacuumMinDeletes) {
+            return;
+        }
+        if (!isQuiet()) {
+            logger.debug("Postponing vector store maintenance, requests in flight or ingestion running");
+            return;
+        }
+
+        try {
+            // Session-level lock: VACUUM cannot run in a transaction, so the lock, the
+            // maintenance statements and the unlock share one connection
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                String table = documentService.getTableName();
+                Boolean locked = session.queryForObject("SELECT pg_try_advisory_lock(hashtext(?))", Boolean.class, table);
+                if (!Boolean.TRUE.equals(locked)) {
+                    logger.debug("Vector store maintenance already running on another replica");
+                    return null;
+                }
+                try {
+                    vacuumAndReindex(session, table);
+                } finally {
+                    session.queryForObject("SELECT pg_advisory_unlock(hashtext(?))", Boolean.class, table);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.error("Error during vector store maintenance", e);
+        }
+    }
+
+    private void vacuumAndReindex(JdbcTemplate session, String table) {
+        logger.info("Vacuuming {} after {} deleted chunks", table, deletedSinceVacuum.get());
+        session.execute("VACUUM (ANALYZE) " + table);
+        deletedSinceVacuum.set(0);
+
+        // VACUUM does not shrink an HNSW graph, rebuild it once enough of it is dead
+        Long live = session.queryForObject(
+                "SELECT n_live_tup FROM pg_stat_user_tables WHERE relname = ?", Long.class, table);
+        long liveRows = live != null ? live : 0;
+        if (deletedSinceReindex.get() > reindexDeletedRatio * Math.max(liveRows, 1) && isQuiet()) {
+            for (String index : findVectorIndexes()) {
+                logger.info("Rebuilding vector index {}", index);
+                session.execute("REINDEX INDEX CONCURRENTLY " + index);
+            }
+            deletedSinceReindex.set(0);
+        }
+        logger.info("Vector store maintenance done: {}", getStats());
+    }
+
+    /**
+     * Table and index size, tuple counts and bloat for the vector store.
+     */
+    public Map<String, Object> getStats() {
+        String table = documentService.getTableName();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("table", table);
+        stats.putAll(jdbcTemplate.queryForMap(
+                "SELECT pg_total_relation_size(relid) AS total_bytes, " +
+                        "pg_relation_size(relid) AS table_bytes, " +
+                        "pg_indexes_size(relid) AS index_bytes, " +
+                        "n_live_tup AS live_tuples, " +
+                        "n_dead_tup AS dead_tuples, " +
+                        "last_vacuum, last_autovacuum " +
+                        "FROM pg_stat_user_tables WHERE relname = ?", table));
+
+        long live = ((Number) stats.get("live_tuples")).longValue();
+        long dead = ((Number) stats.get("dead_tuples")).longValue();
+        stats.put("dead_tuple_ratio", live + dead == 0 ? 0.0 : (double) dead / (live + dead));
+
+        Map<String, Object> indexes = new LinkedHashMap<>();
+        for (String index : findVectorIndexes()) {
+            indexes.put(index, jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, index));
+        }
+        stats.put("vector_index_bytes", indexes);
+        stats.put("pending_document_deletes", documentService.getPendingDeleteCount());
+        stats.put("deleted_since_vacuum", deletedSinceVacuum.get());
+        stats.put("deleted_since_reindex", deletedSinceReindex.get());
+        return stats;
+    }
+
+    private List<String> findVectorIndexes() {
+        return jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename = ? AND indexdef ILIKE '%USING hnsw%'",
+                String.class, documentService.getTableName());
+    }
+
+    /**
+     * No request in flight on this replica and no queued or running ingestion on any
+     * replica; queue workers embed outside the HTTP limiters.
+     */
+    private boolean isQuiet() {
+        return ingestionLimiter.getInFlight() == 0 && ingestionLimiter.getWaiting() == 0
+                && queryLimiter.getInFlight() == 0 && queryLimiter.getWaiting() == 0
+                && !ingestionQueueService.hasUnfinishedJobs();
+    }
+}
@@ -0,0 +1,465 @@
+package springia.ragollamapdf.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Ingestion job queue stored in Postgres so every replica can take part in parsing
+ * and embedding.
+ * <p>
+ * A job holds the uploaded PDF until a worker splits it into per-chunk tasks. Jobs and
+ * tasks are claimed with {@code FOR UPDATE SKIP LOCKED} under a lease that the owner
+ * renews by heartbeat; work whose lease expired (crashed replica) is claimed again.
+ * Every state change made by a worker checks that it still owns the lease. Released
+ * work waits an exponential backoff ({@code next_attempt_at}) before it can be claimed
+ * again, and a failed job takes its remaining tasks and already stored chunks with it.
+ */
+@Service
+public class IngestionQueueService {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionQueueService.class);
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    public record ClaimedJob(long id, String documentId, String fileName, byte[] pdf, long ingestedAt, Long expiresAt) {
+    }
+
+    public record ClaimedTask(String id, long jobId, Document document) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final String vectorTableName;
+    private final boolean enabled;
+    private final long leaseMs;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long maxBackoffMs;
+    private final long pollIntervalMs;
+    private final long awaitTimeoutMs;
+
+    public IngestionQueueService(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 ObjectMapper objectMapper,
+                                 @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String vectorTableName,
+                                 @Value("${ingestion.queue.enabled:false}") boolean enabled,
+                                 @Value("${ingestion.queue.lease-ms:60000}") long leaseMs,
+                                 @Value("${ingestion.queue.max-attempts:3}") int maxAttempts,
+                                 @Value("${ingestion.queue.retry-backoff-ms:5000}") long retryBackoffMs,
+                                 @Value("${ingestion.queue.max-backoff-ms:300000}") long maxBackoffMs,
+                                 @Value("${ingestion.queue.poll-interval-ms:1000}") long pollIntervalMs,
+                                 @Value("${ingestion.queue.await-timeout-ms:600000}") long awaitTimeoutMs) {
+        if (!vectorTableName.matches("[A-Za-z_][A-Za-z0-9_.]*")) {
+            throw new IllegalArgumentException("Invalid vector store table name: " + vectorTableName);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.vectorTableName = vectorTableName;
+        this.enabled = enabled;
+        this.leaseMs = leaseMs;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+    }
+
+    @PostConstruct
+    public void initSchema() {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS ingestion_job (" +
+                "id bigserial PRIMARY KEY, " +
+                "document_id text NOT NULL, " +
+                "file_name text, " +
+                "pdf bytea, " +
+                "ingested_at bigint NOT NULL, " +
+                "expires_at bigint, " +
+                "status text NOT NULL DEFAULT 'PENDING', " +
+                "lease_owner text, " +
+                "lease_expires_at timestamptz, " +
+                "attempts int NOT NULL DEFAULT 0, " +
+                "next_attempt_at timestamptz NOT NULL DEFAULT now(), " +
+                "chunk_count int, " +
+                "error text, " +
+                "created_at timestamptz NOT NULL DEFAULT now(), " +
+                "updated_at timestamptz NOT NULL DEFAULT now())");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS ingestion_task (" +
+                "id text PRIMARY KEY, " +
+                "job_id bigint NOT NULL REFERENCES ingestion_job (id) ON DELETE CASCADE, " +
+                "content text NOT NULL, " +
+                "metadata jsonb NOT NULL, " +
+                "status text NOT NULL DEFAULT 'PENDING', " +
+                "lease_owner text, " +
+                "lease_expires_at timestamptz, " +
+                "attempts int NOT NULL DEFAULT 0, " +
+                "next_attempt_at timestamptz NOT NULL DEFAULT now(), " +
+                "created_at timestamptz NOT NULL DEFAULT now())");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ingestion_job_status_idx ON ingestion_job (status, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ingestion_task_status_idx ON ingestion_task (status, created_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ingestion_task_job_idx ON ingestion_task (job_id)");
+    }
+
+    /**
+     * Chunk ids derive from the job and the chunk position, so a job split twice after a
+     * lost lease produces the same ids and each chunk is stored only once.
+     */
+    public static String chunkId(long jobId, int index) {
+        return UUID.nameUUIDFromBytes(("ingestion-job:" + jobId + ":" + index).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    public long enqueue(String documentId, String fileName, byte[] pdf, long ingestedAt, Long expiresAt) {
+        Long id = jdbcTemplate.queryForObject(
+                "INSERT INTO ingestion_job (document_id, file_name, pdf, ingested_at, expires_at) " +
+                        "VALUES (?, ?, ?, ?, ?) RETURNING id",
+                Long.class, documentId, fileName, pdf, ingestedAt, expiresAt);
+        logger.info("Queued ingestion job {} for document {}", id, documentId);
+        return id;
+    }
+
+    /**
+     * Blocks until the job is embedded by any replica. A job the caller stops waiting for
+     * is failed and its stored chunks removed, so a document reported as failed never
+     * shows up later.
+     *
+     * @return the number of chunks stored
+     */
+    public int awaitCompletion(long jobId) throws IOException {
+        long deadline = System.currentTimeMillis() + awaitTimeoutMs;
+        while (true) {
+            Map<String, Object> job = jdbcTemplate.queryForMap(
+                    "SELECT status, chunk_count, error FROM ingestion_job WHERE id = ?", jobId);
+            String status = (String) job.get("status");
+            if ("COMPLETED".equals(status)) {
+                return ((Number) job.get("chunk_count")).intValue();
+            }
+            if ("FAILED".equals(status)) {
+                throw new IOException("Ingestion job " + jobId + " failed: " + job.get("error"));
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                if (failJob(jobId, "timed out after " + awaitTimeoutMs + " ms")) {
+                    throw new IOException("Timed out waiting for ingestion job " + jobId);
+                }
+                // Finished in the meantime, report its outcome
+                continue;
+            }
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failJob(jobId, "caller interrupted");
+                throw new InterruptedIOException("Interrupted while waiting for ingestion job " + jobId);
+            }
+        }
+    }
+
+    public Optional<ClaimedJob> claimJob(String owner) {
+        List<ClaimedJob> jobs = jdbcTemplate.query(
+                "UPDATE ingestion_job SET status = 'SPLITTING', lease_owner = ?, " +
+                        "lease_expires_at = now() + ? * interval '1 millisecond', " +
+                        "attempts = attempts + 1, updated_at = now() " +
+                        "WHERE id = (SELECT id FROM ingestion_job " +
+                        "WHERE (status = 'PENDING' OR (status = 'SPLITTING' AND lease_expires_at < now())) " +
+                        "AND attempts < ? AND next_attempt_at <= now() " +
+                        "ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+                        "RETURNING id, document_id, file_name, pdf, ingested_at, expires_at",
+                (rs, rowNum) -> new ClaimedJob(
+                        rs.getLong("id"),
+                        rs.getString("document_id"),
+                        rs.getString("file_name"),
+                        rs.getBytes("pdf"),
+                        rs.getLong("ingested_at"),
+                        (Long) rs.getObject("expires_at")),
+                owner, leaseMs, maxAttempts);
+        return jobs.stream().findFirst();
+    }
+
+    /**
+     * Stores a batch of chunks of a job being split, the first one at position
+     * {@code firstIndex}. The tasks cannot be claimed before {@link #finishSplit} is called,
+     * and a batch stored again after a retried split is ignored.
+     *
+     * @return false if this worker no longer owns the job; nothing is saved then
+     */
+    public boolean appendChunks(String owner, long jobId, int firstIndex, List<Document> chunks) {
+        Boolean saved = transactionTemplate.execute(status -> {
+            List<Long> owned = jdbcTemplate.queryForList(
+                    "SELECT id FROM ingestion_job WHERE id = ? AND lease_owner = ? AND status = 'SPLITTING' FOR UPDATE",
+                    Long.class, jobId, owner);
+            if (owned.isEmpty()) {
+                return false;
+            }
+
+            List<Object[]> rows = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                Document chunk = chunks.get(i);
+                rows.add(new Object[]{chunkId(jobId, firstIndex + i), jobId, chunk.getText(), toJson(chunk.getMetadata())});
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO ingestion_task (id, job_id, content, metadata) VALUES (?, ?, ?, ?::jsonb) " +
+                            "ON CONFLICT (id) DO NOTHING",
+                    rows);
+            return true;
+        });
+        return Boolean.TRUE.equals(saved);
+    }
+
+    /**
+     * Marks a job as split into {@code chunkCount} chunks, making its tasks claimable, and
+     * releases the PDF payload.
+     *
+     * @return false if this worker no longer owns the job
+     */
+    public boolean finishSplit(String owner, long jobId, int chunkCount) {
+        int owned = jdbcTemplate.update(
+                "UPDATE ingestion_job SET status = ?, chunk_count = ?, pdf = NULL, " +
+                        "lease_owner = NULL, lease_expires_at = NULL, updated_at = now() " +
+                        "WHERE id = ? AND lease_owner = ? AND status = 'SPLITTING'",
+                chunkCount == 0 ? "COMPLETED" : "EMBEDDING", chunkCount, jobId, owner);
+        return owned > 0;
+    }
+
+    /**
+     * Puts a job that could not be split back in the queue after a backoff, or fails it
+     * once out of attempts.
+     */
+    public void releaseJob(String owner, long jobId, String error) {
+        List<String> statuses = jdbcTemplate.queryForList(
+                "UPDATE ingestion_job SET status = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+                        "next_attempt_at = now() + LEAST(? * power(2, GREATEST(attempts - 1, 0)), ?) * interval '1 millisecond', " +
+                        "error = ?, lease_owner = NULL, lease_expires_at = NULL, updated_at = now() " +
+                        "WHERE id = ? AND lease_owner = ? AND status = 'SPLITTING' RETURNING status",
+                String.class, maxAttempts, retryBackoffMs, maxBackoffMs, error, jobId, owner);
+        if (statuses.contains("FAILED")) {
+            // Drop the chunks stored before the split failed
+            jdbcTemplate.update("DELETE FROM ingestion_task WHERE job_id = ?", jobId);
+            logger.warn("Ingestion job {} failed: {}", jobId, error);
+        }
+    }
+
+    /**
+     * Claims chunk tasks of jobs that are still being embedded.
+     */
+    public List<ClaimedTask> claimTasks(String owner, int limit) {
+        return jdbcTemplate.query(
+                "UPDATE ingestion_task SET status = 'RUNNING', lease_owner = ?, " +
+                        "lease_expires_at = now() + ? * interval '1 millisecond', attempts = attempts + 1 " +
+                        "WHERE id IN (SELECT t.id FROM ingestion_task t JOIN ingestion_job j ON j.id = t.job_id " +
+                        "WHERE j.status = 'EMBEDDING' " +
+                        "AND (t.status = 'PENDING' OR (t.status = 'RUNNING' AND t.lease_expires_at < now())) " +
+                        "AND t.attempts < ? AND t.next_attempt_at <= now() " +
+                        "ORDER BY t.created_at LIMIT ? FOR UPDATE OF t SKIP LOCKED) " +
+                        "RETURNING id, job_id, content, metadata::text AS metadata",
+                (rs, rowNum) -> new ClaimedTask(
+                        rs.getString("id"),
+                        rs.getLong("job_id"),
+                        new Document(rs.getString("id"), rs.getString("content"), fromJson(rs.getString("metadata")))),
+                owner, leaseMs, maxAttempts, limit);
+    }
+
+    /**
+     * Marks tasks as embedded and completes the jobs that have no work left. Chunks that
+     * were stored for a job failed in the meantime are removed again.
+     */
+    public void completeTasks(String owner, Collection<ClaimedTask> tasks) {
+        String[] ids = tasks.stream().map(ClaimedTask::id).toArray(String[]::new);
+        Long[] jobIds = tasks.stream().map(ClaimedTask::jobId).distinct().toArray(Long[]::new);
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<String> done = new HashSet<>(jdbcTemplate.query(
+                    "UPDATE ingestion_task SET status = 'DONE', lease_owner = NULL " +
+                            "WHERE id = ANY (?) AND lease_owner = ? AND status = 'RUNNING' RETURNING id",
+                    ps -> {
+                        ps.setArray(1, ps.getConnection().createArrayOf("text", ids));
+                        ps.setString(2, owner);
+                    },
+                    (rs, rowNum) -> rs.getString(1)));
+
+            removeChunksOfFailedJobs(tasks.stream().filter(task -> !done.contains(task.id())).toList());
+
+            List<Long> completed = jdbcTemplate.query(
+                    "UPDATE ingestion_job j SET status = 'COMPLETED', updated_at = now() " +
+                            "WHERE j.id = ANY (?) AND j.status = 'EMBEDDING' " +
+                            "AND NOT EXISTS (SELECT 1 FROM ingestion_task t WHERE t.job_id = j.id AND t.status <> 'DONE') " +
+                            "RETURNING j.id",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", jobIds)),
+                    (rs, rowNum) -> rs.getLong(1));
+            completed.forEach(jobId -> {
+                jdbcTemplate.update("DELETE FROM ingestion_task WHERE job_id = ?", jobId);
+                logger.info("Ingestion job {} completed", jobId);
+            });
+        });
+    }
+
+    /**
+     * Removes the stored chunks of these tasks if their job has failed, for embeddings that
+     * landed after the job was cleaned up.
+     */
+    public void removeChunksOfFailedJobs(Collection<ClaimedTask> tasks) {
+        Map<Long, List<String>> idsByJob = tasks.stream()
+                .collect(Collectors.groupingBy(ClaimedTask::jobId,
+                        Collectors.mapping(ClaimedTask::id, Collectors.toList())));
+        idsByJob.forEach((jobId, ids) -> {
+            int removed = jdbcTemplate.update(
+                    "DELETE FROM " + vectorTableName + " WHERE id = ANY (CAST(? AS uuid[])) " +
+                            "AND EXISTS (SELECT 1 FROM ingestion_job WHERE id = ? AND status = 'FAILED')",
+                    ps -> {
+                        ps.setArray(1, ps.getConnection().createArrayOf("text", ids.toArray()));
+                        ps.setLong(2, jobId);
+                    });
+            if (removed > 0) {
+                logger.info("Removed {} chunks embedded for failed ingestion job {}", removed, jobId);
+            }
+        });
+    }
+
+    /**
+     * Returns tasks to the queue after a backoff; tasks out of attempts fail their job.
+     *
+     * @param countAttempt false when the backend was never called (circuit open), so the
+     *                     claim does not use up one of the task's attempts
+     */
+    public void releaseTasks(String owner, Collection<ClaimedTask> tasks, String error, boolean countAttempt) {
+        String[] ids = tasks.stream().map(ClaimedTask::id).toArray(String[]::new);
+        int uncounted = countAttempt ? 0 : 1;
+        List<Long> failedJobs = jdbcTemplate.query(
+                "UPDATE ingestion_task SET attempts = attempts - ?, " +
+                        "status = CASE WHEN attempts - ? >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+                        "next_attempt_at = now() + LEAST(? * power(2, GREATEST(attempts - ? - 1, 0)), ?) * interval '1 millisecond', " +
+                        "lease_owner = NULL, lease_expires_at = NULL " +
+                        "WHERE id = ANY (?) AND lease_owner = ? AND status = 'RUNNING' " +
+                        "RETURNING job_id, status",
+                ps -> {
+                    ps.setInt(1, uncounted);
+                    ps.setInt(2, uncounted);
+                    ps.setInt(3, maxAttempts);
+                    ps.setLong(4, retryBackoffMs);
+                    ps.setInt(5, uncounted);
+                    ps.setLong(6, maxBackoffMs);
+                    ps.setArray(7, ps.getConnection().createArrayOf("text", ids));
+                    ps.setString(8, owner);
+                },
+                (rs, rowNum) -> "FAILED".equals(rs.getString("status")) ? rs.getLong("job_id") : null);
+        failedJobs.stream().filter(jobId -> jobId != null).distinct().forEach(jobId -> failJob(jobId, error));
+    }
+
+    /**
+     * Fails work abandoned by a crashed replica after its last allowed attempt.
+     */
+    public void failExhausted() {
+        List<Long> failedJobs = jdbcTemplate.queryForList(
+                "UPDATE ingestion_task SET status = 'FAILED' " +
+                        "WHERE status = 'RUNNING' AND lease_expires_at < now() AND attempts >= ? RETURNING job_id",
+                Long.class, maxAttempts);
+        failedJobs.stream().distinct().forEach(jobId -> failJob(jobId, "lease expired after " + maxAttempts + " attempts"));
+        List<Long> failedSplits = jdbcTemplate.queryForList(
+                "UPDATE ingestion_job SET status = 'FAILED', error = 'lease expired', pdf = NULL, updated_at = now() " +
+                        "WHERE status = 'SPLITTING' AND lease_expires_at < now() AND attempts >= ? RETURNING id",
+                Long.class, maxAttempts);
+        failedSplits.forEach(jobId -> jdbcTemplate.update("DELETE FROM ingestion_task WHERE job_id = ?", jobId));
+    }
+
+    /**
+     * Extends the lease of everything this replica is currently working on.
+     */
+    public void heartbeat(String owner) {
+        jdbcTemplate.update(
+                "UPDATE ingestion_job SET lease_expires_at = now() + ? * interval '1 millisecond' " +
+                        "WHERE lease_owner = ? AND status = 'SPLITTING'",
+                leaseMs, owner);
+        jdbcTemplate.update(
+                "UPDATE ingestion_task SET lease_expires_at = now() + ? * interval '1 millisecond' " +
+                        "WHERE lease_owner = ? AND status = 'RUNNING'",
+                leaseMs, owner);
+    }
+
+    /**
+     * Whether any replica has ingestion work queued or in progress.
+     */
+    public boolean hasUnfinishedJobs() {
+        if (!enabled) {
+            return false;
+        }
+        Boolean unfinished = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM ingestion_job WHERE status IN ('PENDING', 'SPLITTING', 'EMBEDDING'))",
+                Boolean.class);
+        return Boolean.TRUE.equals(unfinished);
+    }
+
+    /**
+     * Removes finished jobs older than the retention period.
+     */
+    public int purgeFinished(long retentionMs) {
+        return jdbcTemplate.update(
+                "DELETE FROM ingestion_job WHERE status IN ('COMPLETED', 'FAILED') " +
+                        "AND updated_at < now() - ? * interval '1 millisecond'",
+                retentionMs);
+    }
+
+    /**
+     * Fails the job, drops its remaining tasks and removes the chunks it already stored.
+     * Only chunks of this ingestion are removed (same {@code ingested_at}), not a previous
+     * version of the document that a replace is about to supersede.
+     */
+    private boolean failJob(long jobId, String error) {
+        Boolean failed = transactionTemplate.execute(status -> {
+            List<Map<String, Object>> jobs = jdbcTemplate.queryForList(
+                    "UPDATE ingestion_job SET status = 'FAILED', error = ?, pdf = NULL, " +
+                            "lease_owner = NULL, lease_expires_at = NULL, updated_at = now() " +
+                            "WHERE id = ? AND status NOT IN ('COMPLETED', 'FAILED') RETURNING document_id, ingested_at",
+                    error, jobId);
+            if (jobs.isEmpty()) {
+                return false;
+            }
+            jdbcTemplate.update("DELETE FROM ingestion_task WHERE job_id = ?", jobId);
+            int removed = jdbcTemplate.update(
+                    "DELETE FROM " + vectorTableName + " WHERE metadata->>'" + PdfService.DOCUMENT_ID_KEY + "' = ? " +
+                            "AND (metadata->>'" + PdfService.INGESTED_AT_KEY + "')::bigint = ?",
+                    jobs.get(0).get("document_id"), jobs.get(0).get("ingested_at"));
+            logger.warn("Ingestion job {} failed, {} stored chunks removed: {}", jobId, removed, error);
+            return true;
+        });
+        return Boolean.TRUE.equals(failed);
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize chunk metadata", e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String metadata) throws SQLException {
+        try {
+            return objectMapper.readValue(metadata, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Could not read chunk metadata", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package springia.ragollamapdf.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import springia.ragollamapdf.resilience.CallNotPermittedException;
+import springia.ragollamapdf.resilience.CallTimeoutException;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Per-replica worker draining the Postgres ingestion queue: splits claimed PDFs into
+ * chunk tasks and embeds claimed chunks in batches.
+ */
+@Service
+@ConditionalOnProperty(name = "ingestion.queue.enabled", havingValue = "true")
+public class IngestionWorker {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionWorker.class);
+
+    private final IngestionQueueService queueService;
+    private final PdfService pdfService;
+    private final int batchSize;
+    private final long retentionMs;
+    private final String workerId;
+
+    public IngestionWorker(IngestionQueueService queueService,
+                           PdfService pdfService,
+                           @Value("${ingestion.queue.batch-size:16}") int batchSize,
+                           @Value("${ingestion.queue.retention-ms:86400000}") long retentionMs) {
+        this.queueService = queueService;
+        this.pdfService = pdfService;
+        this.batchSize = batchSize;
+        this.retentionMs = retentionMs;
+        this.workerId = hostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Keeps claiming work until the queue is empty or a step fails, then waits for the
+     * next poll. Failed work is released with a backoff rather than retried in this loop.
+     */
+    @Scheduled(fixedDelayString = "${ingestion.queue.poll-interval-ms:1000}")
+    public void poll() {
+        try {
+            queueService.failExhausted();
+            boolean worked;
+            do {
+                worked = splitNextJob() | embedNextBatch();
+            } while (worked);
+        } catch (Exception e) {
+            logger.error("Error polling ingestion queue", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.queue.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        try {
+            queueService.heartbeat(workerId);
+        } catch (Exception e) {
+            logger.error("Error renewing ingestion leases", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.queue.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            int purged = queueService.purgeFinished(retentionMs);
+            if (purged > 0) {
+                logger.info("Purged {} finished ingestion jobs", purged);
+            }
+        } catch (Exception e) {
+            logger.error("Error purging ingestion jobs", e);
+        }
+    }
+
+    private boolean splitNextJob() {
+        Optional<IngestionQueueService.ClaimedJob> claimed = queueService.claimJob(workerId);
+        if (claimed.isEmpty()) {
+            return false;
+        }
+        IngestionQueueService.ClaimedJob job = claimed.get();
+        try {
+            // Chunks are stored batch by batch as the chunker emits them, so a large PDF is
+            // never held in memory as a whole list of chunks
+            List<Document> batch = new ArrayList<>(batchSize);
+            int[] stored = {0};
+            pdfService.splitPdf(new ByteArrayResource(job.pdf()),
+                    job.documentId(), job.fileName(), job.ingestedAt(), job.expiresAt(), chunk -> {
+                        batch.add(chunk);
+                        if (batch.size() == batchSize) {
+                            stored[0] += appendChunks(job.id(), stored[0], batch);
+                        }
+                    });
+            stored[0] += appendChunks(job.id(), stored[0], batch);
+            if (!queueService.finishSplit(workerId, job.id(), stored[0])) {
+                throw new LeaseLostException();
+            }
+            logger.info("{} split ingestion job {} into {} chunks", workerId, job.id(), stored[0]);
+            return true;
+        } catch (LeaseLostException e) {
+            logger.warn("{} lost the lease on ingestion job {}, discarding its chunks", workerId, job.id());
+            return true;
+        } catch (Exception e) {
+            logger.error("Error splitting ingestion job {}", job.id(), e);
+            queueService.releaseJob(workerId, job.id(), e.getMessage());
+            return false;
+        }
+    }
+
+    private int appendChunks(long jobId, int firstIndex, List<Document> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        if (!queueService.appendChunks(workerId, jobId, firstIndex, batch)) {
+            throw new LeaseLostException();
+        }
+        int appended = batch.size();
+        batch.clear();
+        return appended;
+    }
+
+    private boolean embedNextBatch() {
+        List<IngestionQueueService.ClaimedTask> tasks = queueService.claimTasks(workerId, batchSize);
+        if (tasks.isEmpty()) {
+            return false;
+        }
+        try {
+            pdfService.storeChunks(tasks.stream()
+                    .map(IngestionQueueService.ClaimedTask::document)
+                    .collect(Collectors.toList()));
+            queueService.completeTasks(workerId, tasks);
+            logger.debug("{} embedded {} chunks", workerId, tasks.size());
+            return true;
+        } catch (CallNotPermittedException e) {
+            // The embedding backend was never called, so the claim does not use up an attempt.
+            logger.warn("Embedding backend unavailable, releasing {} chunks: {}", tasks.size(), e.getMessage());
+            queueService.releaseTasks(workerId, tasks, e.getMessage(), false);
+            return false;
+        } catch (CallTimeoutException e) {
+            logger.error("Embedding {} chunks timed out", tasks.size(), e);
+            queueService.releaseTasks(workerId, tasks, e.getMessage(), true);
+            // The abandoned insert may still land after its job has failed and been cleaned up
+            e.whenAbandonedCallEnds(() -> {
+                try {
+                    queueService.removeChunksOfFailedJobs(tasks);
+                } catch (Exception cleanupError) {
+                    logger.error("Error removing late chunks of failed ingestion jobs", cleanupError);
+                }
+            });
+            return false;
+        } catch (Exception e) {
+            logger.error("Error embedding {} chunks", tasks.size(), e);
+            queueService.releaseTasks(workerId, tasks, e.getMessage(), true);
+            return false;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+
+    /** Aborts a split whose job was reclaimed by another worker. */
+    private static class LeaseLostException extends RuntimeException {
+    }
+}
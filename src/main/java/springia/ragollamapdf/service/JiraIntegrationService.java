@@ -2,10 +2,11 @@ package springia.ragollamapdf.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import com.atlassian.jira.rest.client.api.domain.Issue;
+import springia.ragollamapdf.resilience.BackendUnavailableException;
+import springia.ragollamapdf.resilience.RequestOutcome;
 
 import java.util.List;
 import java.util.regex.Matcher;
@@ -16,13 +17,20 @@ import java.util.stream.Collectors;
 public class JiraIntegrationService {
     private static final Logger logger = LoggerFactory.getLogger(JiraIntegrationService.class);
 
-    private final ChatModel chatModel;
+    private static final String JIRA_UNAVAILABLE_RESPONSE =
+            "Jira data is currently unavailable, so this question cannot be answered right now. Please try again later.";
+
+    private final ChatService chatService;
     private final MyJiraClient jiraClient;
+    private final JqlGenerationService jqlGenerationService;
 
     @Autowired
-    public JiraIntegrationService(ChatModel chatModel, MyJiraClient jiraClient) {
-        this.chatModel = chatModel;
+    public JiraIntegrationService(ChatService chatService,
+                                  MyJiraClient jiraClient,
+                                  JqlGenerationService jqlGenerationService) {
+        this.chatService = chatService;
         this.jiraClient = jiraClient;
+        this.jqlGenerationService = jqlGenerationService;
     }
 
     /**
@@ -81,13 +89,18 @@ public class JiraIntegrationService {
             // Forward to Ollama with the Jira data as context
             return forwardToOllama(question, jiraData);
 
+        } catch (BackendUnavailableException e) {
+            if (!"jira".equals(e.getBackend())) {
+                // Chat model failures are turned into a static fallback by the caller
+                throw e;
+            }
+            RequestOutcome.recordBackendFailure();
+            logger.warn("Jira unavailable, returning fallback: {}", e.getMessage());
+            return JIRA_UNAVAILABLE_RESPONSE;
         } catch (Exception e) {
+            // Never answer an error with another model call
             logger.error("Error processing Jira query", e);
-
-            // For errors, still use Ollama but include error info in context
-            String errorContext = "Error accessing Jira: " + e.getMessage() +
-                    "\nThe system was unable to retrieve the requested Jira data.";
-            return forwardToOllama(question, errorContext);
+            return JIRA_UNAVAILABLE_RESPONSE;
         }
     }
 
@@ -96,6 +109,7 @@ public class JiraIntegrationService {
      */
     private String forwardToOllama(String question, String context) {
         String prompt;
+        ChatTask task;
 
         if (context != null && !context.isEmpty()) {
             prompt = String.format(
@@ -107,13 +121,15 @@ public class JiraIntegrationService {
                             "relevant information, respond naturally as if having a conversation.",
                     context, question
             );
+            task = ChatTask.RAG;
         } else {
             // No context - just forward the question directly
             prompt = question;
+            task = ChatTask.GENERAL;
         }
 
         logger.info("Forwarding to Ollama: {}", prompt);
-        return chatModel.call(prompt);
+        return chatService.call(task, prompt);
     }
 
     /**
@@ -149,17 +165,8 @@ public class JiraIntegrationService {
      * Create a JQL query from a natural language question
      */
     private String createJqlFromQuestion(String question) {
-        // Use Ollama to create a JQL query
-        String prompt = String.format(
-                "Convert this question about Jira into a JQL query. " +
-                        "Respond with ONLY the JQL query, nothing else.\n\n" +
-                        "Question: %s",
-                question
-        );
-
-        String jql = chatModel.call(prompt).trim();
-        logger.info("Generated JQL: {}", jql);
-        return jql;
+        // Templates and cached mappings first, Ollama only as a last resort
+        return jqlGenerationService.generate(question);
     }
 
     /**
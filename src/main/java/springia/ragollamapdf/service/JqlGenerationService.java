@@ -0,0 +1,357 @@
+package springia.ragollamapdf.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import springia.ragollamapdf.resilience.BackendUnavailableException;
+import springia.ragollamapdf.resilience.CircuitBreaker;
+import springia.ragollamapdf.resilience.RequestOutcome;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a natural language Jira question into JQL.
+ * <p>
+ * Lookup order: parameterized templates for common intents, then an exact cache,
+ * then a semantic cache (embedding similarity) of previous questions, and only then
+ * the chat model. JQL produced by the model is validated before it is cached.
+ */
+@Service
+public class JqlGenerationService {
+    private static final Logger logger = LoggerFactory.getLogger(JqlGenerationService.class);
+
+    // Only the literal is case-insensitive, so a surname must really be capitalized
+    private static final Pattern ASSIGNEE_PATTERN = Pattern.compile(
+            "(?i:assigned to) ([\\w.@-]+(?: [A-Z][\\w-]*)?)");
+    private static final Pattern MY_ISSUES_PATTERN = Pattern.compile(
+            "\\b(my|assigned to me)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UNASSIGNED_PATTERN = Pattern.compile(
+            "\\bunassigned\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STATUS_PATTERN = Pattern.compile(
+            "\\b(?:status (?:is )?[\"']?([\\w ]+?)[\"']?(?=$|[?.,]| and )|(to do|open(?! sprint)|in progress|in review|done|closed|resolved))\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SPRINT_PATTERN = Pattern.compile(
+            "\\b(?:(current|active|open) sprint|sprint ([\\w-]+))\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FIX_VERSION_PATTERN = Pattern.compile(
+            "\\b(?:fix ?version|release|version) ([\\w.-]*\\d[\\w.-]*)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ISSUE_TYPE_PATTERN = Pattern.compile(
+            "\\b(bug|task|story|stories|epic|sub-?task)s?\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATED_LAST_PATTERN = Pattern.compile(
+            "created (?:in )?(?:the )?(?:last|past) (\\d+) (day|week|month)s?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATED_PERIOD_PATTERN = Pattern.compile(
+            "created (today|this week|this month)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ISSUE_KEY_PATTERN = Pattern.compile("\\b[A-Z][A-Z0-9]+-\\d+\\b");
+    private static final Pattern QUOTED_PATTERN = Pattern.compile("[\"']([^\"']+)[\"']");
+    private static final Pattern NAMED_VALUE_PATTERN = Pattern.compile(
+            "\\b(?:by|to|for|from|assignee|reporter|project|sprint|version|release|named|called) ([\\w.@-]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WORD_PATTERN = Pattern.compile("[\\p{L}\\p{N}][\\p{L}\\p{N}.@-]*");
+
+    // Words a templated question may contain besides the matched intents
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "show", "list", "find", "get", "give", "display", "fetch", "me", "all", "the", "a", "an", "any",
+            "which", "what", "are", "is", "were", "was", "there", "issue", "issues", "ticket", "tickets",
+            "jira", "with", "in", "of", "for", "and", "that", "please", "how", "many", "currently", "i",
+            "to", "do", "have", "has", "status");
+
+    // A query must open with a field and an operator; "is" only takes EMPTY or NULL
+    private static final Pattern JQL_CLAUSE_PATTERN = Pattern.compile(
+            "^(not\\s+)?\\(*\\s*(\"[^\"]+\"|[\\w.\\[\\]]+)\\s*" +
+                    "(!=|!~|>=|<=|=|~|>|<|\\s(not\\s+)?in\\s*\\(|\\sis(\\s+not)?\\s+(empty|null)\\b|\\swas(\\s+not)?(\\s+in)?\\s|\\schanged\\b)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final ChatService chatService;
+    private final EmbeddingModel embeddingModel;
+    private final CircuitBreaker embeddingCircuitBreaker;
+    private final boolean semanticCacheEnabled;
+    private final double similarityThreshold;
+    private final Map<String, CachedJql> cache;
+
+    public JqlGenerationService(ChatService chatService,
+                                EmbeddingModel embeddingModel,
+                                @Qualifier("embeddingCircuitBreaker") CircuitBreaker embeddingCircuitBreaker,
+                                @Value("${jql.cache.max-entries:500}") int maxEntries,
+                                @Value("${jql.cache.semantic.enabled:true}") boolean semanticCacheEnabled,
+                                @Value("${jql.cache.semantic.similarity-threshold:0.92}") double similarityThreshold) {
+        this.chatService = chatService;
+        this.embeddingModel = embeddingModel;
+        this.embeddingCircuitBreaker = embeddingCircuitBreaker;
+        this.semanticCacheEnabled = semanticCacheEnabled;
+        this.similarityThreshold = similarityThreshold;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedJql> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Generates JQL for the question, calling the chat model only as a last resort.
+     */
+    public String generate(String question) {
+        String templated = fromTemplates(question);
+        if (templated != null) {
+            logger.info("JQL from template: {}", templated);
+            return templated;
+        }
+
+        String key = normalize(question);
+        synchronized (cache) {
+            CachedJql cached = cache.get(key);
+            if (cached != null) {
+                logger.info("JQL from exact cache: {}", cached.jql);
+                return cached.jql;
+            }
+        }
+
+        Set<String> values = extractValues(question);
+        float[] embedding = semanticCacheEnabled ? embed(question) : null;
+        if (embedding != null) {
+            String similar = findSimilar(embedding, values);
+            if (similar != null) {
+                logger.info("JQL from semantic cache: {}", similar);
+                return similar;
+            }
+        }
+
+        String prompt = String.format(
+                "Convert this question about Jira into a JQL query. " +
+                        "Respond with ONLY the JQL query, nothing else.\n\n" +
+                        "Question: %s",
+                question
+        );
+        String jql = cleanModelOutput(chatService.call(ChatTask.JQL, prompt));
+        logger.info("Generated JQL: {}", jql);
+
+        if (isValid(jql)) {
+            synchronized (cache) {
+                cache.put(key, new CachedJql(jql, embedding, values));
+            }
+        } else {
+            logger.warn("Generated JQL failed validation, not caching: {}", jql);
+        }
+        return jql;
+    }
+
+    /**
+     * Builds JQL from known intents, or returns null unless the intents account for
+     * every meaningful word of the question.
+     */
+    String fromTemplates(String question) {
+        List<String> clauses = new ArrayList<>();
+        StringBuilder residual = new StringBuilder(question);
+
+        Matcher unassigned = UNASSIGNED_PATTERN.matcher(question);
+        Matcher mine = MY_ISSUES_PATTERN.matcher(question);
+        Matcher assignee = ASSIGNEE_PATTERN.matcher(question);
+        if (unassigned.find()) {
+            clauses.add("assignee is EMPTY");
+            consume(residual, unassigned);
+        } else if (mine.find()) {
+            clauses.add("assignee = currentUser()");
+            consume(residual, mine);
+        } else if (assignee.find()) {
+            clauses.add("assignee = " + quote(assignee.group(1)));
+            consume(residual, assignee);
+        }
+
+        Matcher status = STATUS_PATTERN.matcher(question);
+        if (status.find()) {
+            String value = status.group(1) != null ? status.group(1) : status.group(2);
+            clauses.add("status = " + quote(value.trim()));
+            consume(residual, status);
+        }
+
+        Matcher issueType = ISSUE_TYPE_PATTERN.matcher(question);
+        if (issueType.find()) {
+            String type = issueType.group(1).toLowerCase(Locale.ROOT);
+            type = type.equals("stories") ? "Story" : type.startsWith("sub") ? "Sub-task"
+                    : Character.toUpperCase(type.charAt(0)) + type.substring(1);
+            clauses.add("issuetype = " + quote(type));
+            consume(residual, issueType);
+        }
+
+        Matcher sprint = SPRINT_PATTERN.matcher(question);
+        if (sprint.find()) {
+            clauses.add(sprint.group(1) != null ? "sprint in openSprints()" : "sprint = " + quote(sprint.group(2)));
+            consume(residual, sprint);
+        }
+
+        Matcher fixVersion = FIX_VERSION_PATTERN.matcher(question);
+        if (fixVersion.find()) {
+            clauses.add("fixVersion = " + quote(fixVersion.group(1)));
+            consume(residual, fixVersion);
+        }
+
+        Matcher createdLast = CREATED_LAST_PATTERN.matcher(question);
+        Matcher createdPeriod = CREATED_PERIOD_PATTERN.matcher(question);
+        if (createdLast.find()) {
+            String unit = createdLast.group(2).toLowerCase(Locale.ROOT);
+            int amount = Integer.parseInt(createdLast.group(1));
+            String offset = unit.equals("month") ? amount * 4 + "w" : amount + unit.substring(0, 1);
+            clauses.add("created >= -" + offset);
+            consume(residual, createdLast);
+        } else if (createdPeriod.find()) {
+            switch (createdPeriod.group(1).toLowerCase(Locale.ROOT)) {
+                case "today" -> clauses.add("created >= startOfDay()");
+                case "this week" -> clauses.add("created >= startOfWeek()");
+                default -> clauses.add("created >= startOfMonth()");
+            }
+            consume(residual, createdPeriod);
+        }
+
+        if (clauses.isEmpty()) {
+            return null;
+        }
+
+        // Anything the templates did not understand must go to the cache or the model
+        Matcher leftover = WORD_PATTERN.matcher(residual);
+        while (leftover.find()) {
+            if (!FILLER_WORDS.contains(leftover.group().toLowerCase(Locale.ROOT))) {
+                logger.debug("Template skipped, unmatched word '{}' in: {}", leftover.group(), question);
+                return null;
+            }
+        }
+        return String.join(" AND ", clauses) + " ORDER BY created DESC";
+    }
+
+    /**
+     * Names, keys, versions and numbers mentioned in the question. Two questions only
+     * share a semantic cache entry when these are identical.
+     */
+    static Set<String> extractValues(String question) {
+        Set<String> values = new HashSet<>();
+        for (Pattern pattern : List.of(ISSUE_KEY_PATTERN, QUOTED_PATTERN, NAMED_VALUE_PATTERN)) {
+            Matcher matcher = pattern.matcher(question);
+            while (matcher.find()) {
+                String value = matcher.groupCount() > 0 ? matcher.group(1) : matcher.group();
+                values.add(value.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        Matcher word = WORD_PATTERN.matcher(question);
+        boolean first = true;
+        while (word.find()) {
+            String token = word.group();
+            boolean hasDigit = token.chars().anyMatch(Character::isDigit);
+            boolean capitalized = !first && Character.isUpperCase(token.codePointAt(0));
+            if (hasDigit || capitalized) {
+                values.add(token.toLowerCase(Locale.ROOT));
+            }
+            first = false;
+        }
+        return values;
+    }
+
+    /**
+     * Cheap syntactic check: one or more field/operator clauses, balanced quotes and parentheses.
+     */
+    boolean isValid(String jql) {
+        if (jql == null || jql.isBlank() || jql.contains("\n") || jql.length() > 1000) {
+            return false;
+        }
+        int depth = 0;
+        boolean inSingle = false;
+        boolean inDouble = false;
+        for (char c : jql.toCharArray()) {
+            if (c == '"' && !inSingle) {
+                inDouble = !inDouble;
+            } else if (c == '\'' && !inDouble) {
+                inSingle = !inSingle;
+            } else if (!inSingle && !inDouble) {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth < 0) {
+                    return false;
+                }
+            }
+        }
+        return depth == 0 && !inSingle && !inDouble && JQL_CLAUSE_PATTERN.matcher(jql).find();
+    }
+
+    private String findSimilar(float[] embedding, Set<String> values) {
+        synchronized (cache) {
+            String best = null;
+            double bestScore = similarityThreshold;
+            for (CachedJql entry : cache.values()) {
+                if (entry.embedding == null || !entry.values.equals(values)) {
+                    continue;
+                }
+                double score = cosineSimilarity(embedding, entry.embedding);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = entry.jql;
+                }
+            }
+            return best;
+        }
+    }
+
+    private float[] embed(String question) {
+        try {
+            return embeddingCircuitBreaker.execute(() -> embeddingModel.embed(question));
+        } catch (BackendUnavailableException e) {
+            RequestOutcome.recordBackendFailure();
+            logger.warn("Skipping semantic JQL cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static double cosineSimilarity(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    static String cleanModelOutput(String output) {
+        String jql = output.trim();
+        if (jql.startsWith("```")) {
+            jql = jql.replaceAll("^```\\w*\\s*", "").replaceAll("\\s*```$", "");
+        }
+        if (jql.startsWith("`") && jql.endsWith("`") && jql.length() > 1) {
+            jql = jql.substring(1, jql.length() - 1);
+        }
+        return jql.trim();
+    }
+
+    private static String normalize(String question) {
+        return question.toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}\\s.-]", " ")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\\\"") + "\"";
+    }
+
+    private static void consume(StringBuilder residual, Matcher matcher) {
+        for (int i = matcher.start(); i < matcher.end(); i++) {
+            residual.setCharAt(i, ' ');
+        }
+    }
+
+    private record CachedJql(String jql, float[] embedding, Set<String> values) {
+    }
+}
@@ -10,8 +10,12 @@ import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInputBuilder;
 import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import springia.ragollamapdf.resilience.BackendUnavailableException;
+import springia.ragollamapdf.resilience.CircuitBreaker;
 
 
 import java.net.URI;
@@ -32,6 +36,10 @@ public class MyJiraClient {
     @Value("${jira.password}")
     private String password;
 
+    @Autowired
+    @Qualifier("jiraCircuitBreaker")
+    private CircuitBreaker jiraCircuitBreaker;
+
     private JiraRestClient restClient;
 
     @PostConstruct
@@ -62,15 +70,16 @@ public class MyJiraClient {
         issueBuilder.setIssueTypeId(issueType);
 
         IssueInput newIssue = issueBuilder.build();
-        return issueClient.createIssue(newIssue).claim().getKey();
+        // Une nouvelle tentative pourrait créer le ticket en double
+        return jiraCircuitBreaker.execute(() -> issueClient.createIssue(newIssue).claim(), false).getKey();
     }
     public void updateIssueDescription(String issueKey, String newDescription) {
         IssueInput input = new IssueInputBuilder()
                 .setDescription(newDescription)
                 .build();
-        restClient.getIssueClient()
+        jiraCircuitBreaker.execute(() -> restClient.getIssueClient()
                 .updateIssue(issueKey, input)
-                .claim();
+                .claim());
     }
 
     /**
@@ -87,37 +96,41 @@ public class MyJiraClient {
             String jql = "fixVersion = '" + versionId + "'";
 
             // Exécuter la recherche (max 500 tickets)
-            SearchResult result = restClient.getSearchClient()
+            SearchResult result = jiraCircuitBreaker.execute(() -> restClient.getSearchClient()
                     .searchJql(jql, 500, 0, null)
-                    .claim();
+                    .claim());
 
             // Ajouter les résultats à notre liste
             result.getIssues().forEach(tickets::add);
 
             return tickets;
+        } catch (BackendUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Erreur lors de la récupération des tickets pour la version: " + versionId, e);
         }
     }
 
     public Issue getIssue(String issueKey) {
-        return restClient.getIssueClient()
+        return jiraCircuitBreaker.execute(() -> restClient.getIssueClient()
                 .getIssue(issueKey)
-                .claim();
+                .claim());
     }
 
     public void deleteIssue(String issueKey, boolean deleteSubtasks) {
-        restClient.getIssueClient()
+        jiraCircuitBreaker.execute(() -> restClient.getIssueClient()
                 .deleteIssue(issueKey, deleteSubtasks)
-                .claim();
+                .claim());
     }
 
     public void addComment(Issue issue, String commentBody) {
-        restClient.getIssueClient()
-                .addComment(issue.getCommentsUri(), Comment.valueOf(commentBody));
+        jiraCircuitBreaker.execute(() -> restClient.getIssueClient()
+                .addComment(issue.getCommentsUri(), Comment.valueOf(commentBody))
+                .claim(), false);
     }
 
     public List<Comment> getAllComments(String issueKey) {
+        // getIssue passe déjà par le disjoncteur Jira
         return StreamSupport.stream(getIssue(issueKey).getComments().spliterator(), false)
                 .collect(Collectors.toList());
     }
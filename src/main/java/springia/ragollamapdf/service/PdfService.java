@@ -2,24 +2,37 @@ package springia.ragollamapdf.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
 import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.core.io.FileSystemResource;
+import springia.ragollamapdf.resilience.CallTimeoutException;
+import springia.ragollamapdf.resilience.CircuitBreaker;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;;
 
 @Service
@@ -27,71 +40,255 @@ public
 class PdfService {
     private static final Logger logger = LoggerFactory.getLogger(PdfService.class);
 
+    public static final String DOCUMENT_ID_KEY = "document_id";
+    public static final String FILE_NAME_KEY = "file_name";
+    public static final String INGESTED_AT_KEY = "ingested_at";
+    public static final String EXPIRES_AT_KEY = "expires_at";
+
+    // Lifecycle timestamps come from the database clock, shared by every replica
+    public static final String DATABASE_NOW_MILLIS = "(extract(epoch from clock_timestamp()) * 1000)::bigint";
+
+    public static final String TOKEN_STRATEGY = "token";
+    public static final String STRUCTURED_STRATEGY = "structured";
+
     private final VectorStore vectorStore;
-    private final ChatModel chatModel;
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+    private final ChatService chatService;
+    private final CircuitBreaker embeddingCircuitBreaker;
+    private final IngestionQueueService ingestionQueueService;
+    private final StructureAwareChunker chunker;
+    private final long defaultTtlHours;
+    private final boolean queueEnabled;
+    private final String chunkingStrategy;
+    private final int storeBatchSize;
 
-    public PdfService(VectorStore vectorStore, ChatModel chatModel) {
+    public PdfService(VectorStore vectorStore,
+                      JdbcTemplate jdbcTemplate,
+                      @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName,
+                      ChatService chatService,
+                      @Qualifier("embeddingCircuitBreaker") CircuitBreaker embeddingCircuitBreaker,
+                      IngestionQueueService ingestionQueueService,
+                      StructureAwareChunker chunker,
+                      @Value("${documents.default-ttl-hours:0}") long defaultTtlHours,
+                      @Value("${ingestion.queue.enabled:false}") boolean queueEnabled,
+                      @Value("${chunking.strategy:structured}") String chunkingStrategy,
+                      @Value("${chunking.store-batch-size:32}") int storeBatchSize) {
+        if (!tableName.matches("[A-Za-z_][A-Za-z0-9_.]*")) {
+            throw new IllegalArgumentException("Invalid vector store table name: " + tableName);
+        }
         this.vectorStore = vectorStore;
-        this.chatModel = chatModel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.chatService = chatService;
+        this.embeddingCircuitBreaker = embeddingCircuitBreaker;
+        this.ingestionQueueService = ingestionQueueService;
+        this.chunker = chunker;
+        this.defaultTtlHours = defaultTtlHours;
+        this.queueEnabled = queueEnabled;
+        this.chunkingStrategy = chunkingStrategy;
+        this.storeBatchSize = storeBatchSize;
     }
 
     public String processPdfAndAnswerQuestion(MultipartFile file, String question) throws IOException {
+        String documentId = UUID.randomUUID().toString();
+        ingestPdf(file, documentId, null);
+        logger.info("Uploaded PDF stored as document {}", documentId);
+
+        // Récupérer les documents similaires
+        List<Document> similarDocuments = embeddingCircuitBreaker.execute(() -> vectorStore.similaritySearch(question));
+
+        // Extraire le texte du document
+        String documentContext = similarDocuments.stream()
+                .map(this::extractDocumentText)
+                .collect(Collectors.joining("\n\n"));
+
+        // Préparer la requête complète
+        String fullPrompt = String.format(
+                "Your task is to answer questions about the uploaded document, using the following document context:\n\n" +
+                        "CONTEXT:\n%s\n\n" +
+                        "QUESTION:\n%s",
+                documentContext,
+                question
+        );
+
+        // Appeler le modèle de chat avec la requête complète
+        String response = chatService.call(ChatTask.RAG, fullPrompt);
+
+        logger.info("Generated Response for uploaded PDF: {}", response);
+        return response;
+    }
+
+    /**
+     * Découpe le PDF et enregistre ses morceaux dans le vectorStore sous l'identifiant donné.
+     * Si la file d'ingestion est activée, le travail est réparti entre les instances.
+     *
+     * @param ttlHours durée de vie en heures, ou null pour la valeur par défaut (0 = pas d'expiration)
+     * @return le nombre de morceaux enregistrés
+     */
+    public int ingestPdf(MultipartFile file, String documentId, Long ttlHours) throws IOException {
+        long ingestedAt = currentTimeMillis();
+        long ttl = ttlHours != null ? ttlHours : defaultTtlHours;
+        Long expiresAt = ttl > 0 ? ingestedAt + Duration.ofHours(ttl).toMillis() : null;
+        String fileName = String.valueOf(file.getOriginalFilename());
+        if (expiresAt != null) {
+            // Le balayage des expirations ne parcourt le vectorStore que si une échéance est passée
+            jdbcTemplate.update("INSERT INTO document_expiry (document_id, ingested_at, expires_at) VALUES (?, ?, ?)",
+                    documentId, ingestedAt, expiresAt);
+        }
+
+        if (queueEnabled) {
+            long jobId = ingestionQueueService.enqueue(documentId, fileName, file.getBytes(), ingestedAt, expiresAt);
+            return ingestionQueueService.awaitCompletion(jobId);
+        }
+
         // Convertir le MultipartFile en fichier temporaire
         File tempFile = convertMultiPartToFile(file);
 
         try {
-            // Configurer le lecteur PDF
-            PdfDocumentReaderConfig config = PdfDocumentReaderConfig.builder()
-                    .withPagesPerDocument(1)
-                    .build();
+            // Les morceaux sont enregistrés par lots au fil du découpage
+            List<Document> batch = new ArrayList<>();
+            AtomicInteger count = new AtomicInteger();
+            try {
+                splitPdf(new FileSystemResource(tempFile), chunkingStrategy,
+                        lifecycleMetadata(documentId, fileName, ingestedAt, expiresAt), chunk -> {
+                            batch.add(chunk);
+                            count.incrementAndGet();
+                            if (batch.size() >= storeBatchSize) {
+                                storeChunks(new ArrayList<>(batch));
+                                batch.clear();
+                            }
+                        });
+                if (!batch.isEmpty()) {
+                    storeChunks(batch);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Un lot en échec peut avoir été inséré en partie : on nettoie toujours
+                removeIngestedChunks(documentId, ingestedAt);
+                if (e instanceof CallTimeoutException timeout) {
+                    // L'insertion abandonnée peut encore aboutir, on nettoie à nouveau après elle
+                    timeout.whenAbandonedCallEnds(() -> removeIngestedChunks(documentId, ingestedAt));
+                }
+                throw e;
+            }
+            logger.info("Loaded {} documents from uploaded PDF", count.get());
+            return count.get();
+        } finally {
+            // Supprimer le fichier temporaire après utilisation
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
 
-            // Créer le lecteur PDF avec le fichier temporaire
-            PagePdfDocumentReader reader = new PagePdfDocumentReader(new FileSystemResource(tempFile), config);
+    /**
+     * Heure courante de la base, en millisecondes.
+     */
+    public long currentTimeMillis() {
+        Long now = jdbcTemplate.queryForObject("SELECT " + DATABASE_NOW_MILLIS, Long.class);
+        return now != null ? now : System.currentTimeMillis();
+    }
 
-            // Diviser le texte en morceaux
-            TokenTextSplitter splitter = new TokenTextSplitter();
-            List<Document> documents = splitter.apply(reader.get());
+    /**
+     * Découpe le PDF et transmet au fil de l'eau les morceaux, portant les métadonnées de
+     * cycle de vie du document.
+     */
+    public void splitPdf(Resource pdf, String documentId, String fileName, long ingestedAt, Long expiresAt,
+                         Consumer<Document> sink) throws IOException {
+        splitPdf(pdf, chunkingStrategy, lifecycleMetadata(documentId, fileName, ingestedAt, expiresAt), sink);
+    }
 
-            // Ajouter des métadonnées et enregistrer le contenu pour débogage
-            documents.forEach(doc -> {
-                doc.getMetadata().put("source", "uploaded-pdf");
-                logger.info("Content length: {}", doc.getText().length());
-            });
+    /**
+     * Compare le découpage par tokens et le découpage structuré sur un même PDF :
+     * nombre de morceaux, temps de découpage et taille des morceaux en tokens.
+     */
+    public Map<String, Object> compareChunking(MultipartFile file) throws IOException {
+        File tempFile = convertMultiPartToFile(file);
 
-            // Sauvegarder dans le vectorStore
-            vectorStore.accept(documents);
-            logger.info("Loaded {} documents from uploaded PDF", documents.size());
-
-            // Récupérer les documents similaires
-            List<Document> similarDocuments = vectorStore.similaritySearch(question);
-
-            // Extraire le texte du document
-            String documentContext = similarDocuments.stream()
-                    .map(this::extractDocumentText)
-                    .collect(Collectors.joining("\n\n"));
-
-            // Préparer la requête complète
-            String fullPrompt = String.format(
-                    "Your task is to answer questions about the uploaded document, using the following document context:\n\n" +
-                            "CONTEXT:\n%s\n\n" +
-                            "QUESTION:\n%s",
-                    documentContext,
-                    question
-            );
-
-            // Appeler le modèle de chat avec la requête complète
-            String response = chatModel.call(fullPrompt);
-
-            logger.info("Generated Response for uploaded PDF: {}", response);
-            return response;
+        try {
+            Map<String, Object> comparison = new LinkedHashMap<>();
+            for (String strategy : List.of(TOKEN_STRATEGY, STRUCTURED_STRATEGY)) {
+                List<Document> chunks = new ArrayList<>();
+                long start = System.nanoTime();
+                splitPdf(new FileSystemResource(tempFile), strategy, Map.of(), chunks::add);
+                long splitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                IntSummaryStatistics tokens = chunks.stream()
+                        .mapToInt(chunk -> chunker.countTokens(chunk.getText()))
+                        .summaryStatistics();
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("chunks", chunks.size());
+                result.put("splitMs", splitMs);
+                result.put("avgTokens", Math.round(tokens.getAverage()));
+                result.put("minTokens", chunks.isEmpty() ? 0 : tokens.getMin());
+                result.put("maxTokens", chunks.isEmpty() ? 0 : tokens.getMax());
+                comparison.put(strategy, result);
+            }
+            return comparison;
         } finally {
-            // Supprimer le fichier temporaire après utilisation
             if (tempFile.exists()) {
                 tempFile.delete();
             }
         }
     }
 
+    private void splitPdf(Resource pdf, String strategy, Map<String, Object> metadata, Consumer<Document> sink) throws IOException {
+        if (!TOKEN_STRATEGY.equals(strategy)) {
+            chunker.chunk(pdf, metadata, sink);
+            return;
+        }
+
+        // Ancien découpage : toutes les pages en mémoire puis TokenTextSplitter
+        PdfDocumentReaderConfig config = PdfDocumentReaderConfig.builder()
+                .withPagesPerDocument(1)
+                .build();
+        PagePdfDocumentReader reader = new PagePdfDocumentReader(pdf, config);
+        TokenTextSplitter splitter = new TokenTextSplitter();
+        splitter.apply(reader.get()).forEach(doc -> {
+            doc.getMetadata().putAll(metadata);
+            sink.accept(doc);
+        });
+    }
+
+    /**
+     * Supprime les morceaux d'une ingestion interrompue, sans toucher à la version
+     * précédente du document qu'un remplacement conserve jusqu'à la fin.
+     */
+    private void removeIngestedChunks(String documentId, long ingestedAt) {
+        try {
+            int removed = jdbcTemplate.update(
+                    "DELETE FROM " + tableName + " WHERE metadata->>'" + DOCUMENT_ID_KEY + "' = ? " +
+                            "AND (metadata->>'" + INGESTED_AT_KEY + "')::bigint = ?",
+                    documentId, ingestedAt);
+            logger.warn("Ingestion of document {} failed, {} stored chunks removed", documentId, removed);
+        } catch (RuntimeException e) {
+            logger.error("Could not remove chunks of failed ingestion of document {}", documentId, e);
+        }
+    }
+
+    private Map<String, Object> lifecycleMetadata(String documentId, String fileName, long ingestedAt, Long expiresAt) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("source", "uploaded-pdf");
+        metadata.put(DOCUMENT_ID_KEY, documentId);
+        metadata.put(FILE_NAME_KEY, fileName);
+        metadata.put(INGESTED_AT_KEY, ingestedAt);
+        if (expiresAt != null) {
+            metadata.put(EXPIRES_AT_KEY, expiresAt);
+        }
+        return metadata;
+    }
+
+    /**
+     * Calcule les embeddings et sauvegarde les morceaux dans le vectorStore.
+     */
+    public void storeChunks(List<Document> documents) {
+        // Les ids des documents sont fixes, une nouvelle tentative reste idempotente
+        embeddingCircuitBreaker.execute(() -> {
+            vectorStore.accept(documents);
+            return null;
+        });
+    }
+
     private String extractDocumentText(Document document) {
         try {
             // Plusieurs stratégies pour extraire le texte
@@ -0,0 +1,427 @@
+package springia.ragollamapdf.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a PDF into chunks page by page, without holding the whole text in memory.
+ * <p>
+ * Page text is parsed into headings, paragraphs and tables; table columns are found from
+ * glyph positions, since the extracted text only separates them by a space. Blocks are packed into
+ * chunks of about {@code targetTokens}; a heading starts a new chunk and a table or
+ * paragraph is only cut when it alone exceeds {@code maxTokens}. Consecutive chunks
+ * overlap by whole trailing blocks, or trailing sentences, up to {@code overlapTokens}.
+ */
+@Component
+public class StructureAwareChunker {
+
+    public static final String PAGE_NUMBER_KEY = "page_number";
+    public static final String END_PAGE_NUMBER_KEY = "end_page_number";
+    public static final String SECTION_KEY = "section";
+    public static final String CHUNK_INDEX_KEY = "chunk_index";
+    public static final String HAS_TABLE_KEY = "has_table";
+
+    private static final Pattern NUMBERED_HEADING = Pattern.compile(
+            "^(\\d+(\\.\\d+)*\\.?|[IVX]+\\.|(chapter|section|chapitre|partie|annex|annexe)\\s+\\w+)\\s*\\S.*",
+            Pattern.CASE_INSENSITIVE);
+    private static final String COLUMN_SEPARATOR = "\t";
+    private static final Pattern TABLE_CELL_SEPARATOR = Pattern.compile("\\s*\\t\\s*");
+    // A gap wider than this many spaces separates two columns rather than two words
+    private static final float COLUMN_GAP_SPACES = 3f;
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?;])\\s+");
+
+    private enum BlockType { HEADING, PARAGRAPH, TABLE }
+
+    private record Block(BlockType type, String text, int page, int tokens) {
+    }
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private final int targetTokens;
+    private final int maxTokens;
+    private final int minTokens;
+    private final int overlapTokens;
+
+    public StructureAwareChunker(@Value("${chunking.target-tokens:400}") int targetTokens,
+                                 @Value("${chunking.max-tokens:600}") int maxTokens,
+                                 @Value("${chunking.min-tokens:50}") int minTokens,
+                                 @Value("${chunking.overlap-tokens:50}") int overlapTokens) {
+        this.targetTokens = targetTokens;
+        this.maxTokens = Math.max(targetTokens, maxTokens);
+        this.minTokens = minTokens;
+        this.overlapTokens = Math.min(overlapTokens, targetTokens / 2);
+    }
+
+    /**
+     * Streams the chunks of the PDF to the sink, each carrying a copy of the base metadata
+     * plus page range, section, chunk index and whether it contains a table.
+     */
+    public void chunk(Resource pdf, Map<String, Object> baseMetadata, Consumer<Document> sink) throws IOException {
+        try (InputStream input = pdf.getInputStream();
+             PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(input))) {
+            PDFTextStripper stripper = new ColumnAwareStripper();
+            stripper.setSortByPosition(true);
+            stripper.setParagraphEnd("\n\n");
+
+            ChunkBuilder builder = new ChunkBuilder(baseMetadata, sink);
+            for (int page = 1; page <= document.getNumberOfPages(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                addPage(builder, stripper.getText(document), page);
+            }
+            builder.finish();
+        }
+    }
+
+    /**
+     * Chunks page texts already extracted, columns separated by tabs as the PDF path does.
+     */
+    void chunkPages(List<String> pageTexts, Map<String, Object> baseMetadata, Consumer<Document> sink) {
+        ChunkBuilder builder = new ChunkBuilder(baseMetadata, sink);
+        for (int i = 0; i < pageTexts.size(); i++) {
+            addPage(builder, pageTexts.get(i), i + 1);
+        }
+        builder.finish();
+    }
+
+    public int countTokens(String text) {
+        return encoding.countTokens(text);
+    }
+
+    private void addPage(ChunkBuilder builder, String pageText, int page) {
+        for (Block block : parseBlocks(pageText, page)) {
+            builder.add(block);
+        }
+    }
+
+    private List<Block> parseBlocks(String pageText, int page) {
+        List<Block> blocks = new ArrayList<>();
+        List<String> paragraph = new ArrayList<>();
+        List<String> table = new ArrayList<>();
+        boolean afterBreak = true;
+
+        for (String rawLine : pageText.split("\\R")) {
+            String line = rawLine.strip();
+            if (line.isEmpty()) {
+                flushLines(blocks, BlockType.PARAGRAPH, paragraph, page);
+                flushTable(blocks, paragraph, table, page);
+                afterBreak = true;
+                continue;
+            }
+
+            if (isTableRow(line)) {
+                flushLines(blocks, BlockType.PARAGRAPH, paragraph, page);
+                table.add(line);
+                afterBreak = false;
+                continue;
+            }
+            flushTable(blocks, paragraph, table, page);
+            line = joinCells(line, " ");
+
+            if ((afterBreak || paragraph.isEmpty()) && isHeading(line)) {
+                flushLines(blocks, BlockType.PARAGRAPH, paragraph, page);
+                blocks.add(newBlock(BlockType.HEADING, line, page));
+                afterBreak = true;
+                continue;
+            }
+
+            paragraph.add(line);
+            afterBreak = false;
+        }
+        flushLines(blocks, BlockType.PARAGRAPH, paragraph, page);
+        flushTable(blocks, paragraph, table, page);
+        return blocks;
+    }
+
+    private void flushTable(List<Block> blocks, List<String> paragraph, List<String> table, int page) {
+        if (table.size() == 1) {
+            // A single aligned line is not a table
+            paragraph.add(joinCells(table.get(0), " "));
+            table.clear();
+        } else {
+            table.replaceAll(row -> joinCells(row, " | "));
+            flushLines(blocks, BlockType.TABLE, table, page);
+        }
+    }
+
+    private String joinCells(String line, String separator) {
+        return TABLE_CELL_SEPARATOR.matcher(line).replaceAll(separator);
+    }
+
+    private void flushLines(List<Block> blocks, BlockType type, List<String> lines, int page) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        String text = type == BlockType.TABLE ? String.join("\n", lines) : String.join(" ", lines);
+        blocks.add(newBlock(type, text, page));
+        lines.clear();
+    }
+
+    private boolean isTableRow(String line) {
+        return TABLE_CELL_SEPARATOR.split(line).length >= 3;
+    }
+
+    private boolean isHeading(String line) {
+        if (line.length() > 80 || line.matches(".*[.,;:]$")) {
+            return false;
+        }
+        if (NUMBERED_HEADING.matcher(line).matches()) {
+            return true;
+        }
+        String letters = line.replaceAll("[^\\p{L}]", "");
+        if (letters.length() >= 3 && letters.equals(letters.toUpperCase())) {
+            return true;
+        }
+        String[] words = line.split("\\s+");
+        if (words.length > 8) {
+            return false;
+        }
+        for (String word : words) {
+            if (word.length() > 3 && !Character.isUpperCase(word.codePointAt(0))) {
+                return false;
+            }
+        }
+        return Character.isUpperCase(line.codePointAt(0));
+    }
+
+    private Block newBlock(BlockType type, String text, int page) {
+        return new Block(type, text, page, countTokens(text));
+    }
+
+    /**
+     * Cuts a block larger than {@code maxTokens}: tables by rows (repeating the header row),
+     * paragraphs by sentences, and as a last resort by words.
+     */
+    private List<Block> splitOversized(Block block) {
+        List<String> units;
+        String header = null;
+        String separator;
+        if (block.type() == BlockType.TABLE) {
+            List<String> rows = List.of(block.text().split("\n"));
+            header = rows.get(0);
+            units = rows.subList(1, rows.size());
+            separator = "\n";
+        } else {
+            units = List.of(SENTENCE_END.split(block.text()));
+            if (units.size() == 1) {
+                units = List.of(block.text().split("\\s+"));
+            }
+            separator = " ";
+        }
+
+        List<Block> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder(header != null ? header : "");
+        int pieceTokens = header != null ? countTokens(header) : 0;
+        int baseTokens = pieceTokens;
+        for (String unit : units) {
+            int unitTokens = countTokens(unit);
+            if (pieceTokens + unitTokens > targetTokens && pieceTokens > baseTokens) {
+                pieces.add(newBlock(block.type(), piece.toString(), block.page()));
+                piece = new StringBuilder(header != null ? header : "");
+                pieceTokens = baseTokens;
+            }
+            if (piece.length() > 0) {
+                piece.append(separator);
+            }
+            piece.append(unit);
+            pieceTokens += unitTokens;
+        }
+        if (pieceTokens > baseTokens) {
+            pieces.add(newBlock(block.type(), piece.toString(), block.page()));
+        }
+        return pieces;
+    }
+
+    /**
+     * Writes a tab before a word that starts far to the right of the previous word on the
+     * same line, so that table columns survive text extraction.
+     */
+    private static final class ColumnAwareStripper extends PDFTextStripper {
+        private float previousEnd = Float.NaN;
+        private float previousY = Float.NaN;
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            previousEnd = Float.NaN;
+            super.startPage(page);
+        }
+
+        @Override
+        protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
+            if (!textPositions.isEmpty()) {
+                TextPosition first = textPositions.get(0);
+                boolean sameLine = Math.abs(first.getYDirAdj() - previousY) < first.getHeightDir();
+                if (!Float.isNaN(previousEnd) && sameLine
+                        && first.getXDirAdj() - previousEnd > COLUMN_GAP_SPACES * spaceWidth(first)) {
+                    output.write(COLUMN_SEPARATOR);
+                }
+                TextPosition last = textPositions.get(textPositions.size() - 1);
+                previousEnd = last.getXDirAdj() + last.getWidthDirAdj();
+                previousY = last.getYDirAdj();
+            }
+            super.writeString(text, textPositions);
+        }
+
+        private static float spaceWidth(TextPosition position) {
+            float width = position.getWidthOfSpace();
+            return width > 0 && !Float.isNaN(width) ? width : position.getFontSizeInPt() * 0.25f;
+        }
+    }
+
+    private final class ChunkBuilder {
+        private final Map<String, Object> baseMetadata;
+        private final Consumer<Document> sink;
+        private final List<Block> current = new ArrayList<>();
+        private int currentTokens;
+        private int carriedTokens;
+        private String section;
+        private String chunkSection;
+        private int chunkIndex;
+
+        private ChunkBuilder(Map<String, Object> baseMetadata, Consumer<Document> sink) {
+            this.baseMetadata = baseMetadata;
+            this.sink = sink;
+        }
+
+        void add(Block block) {
+            if (block.type() == BlockType.HEADING) {
+                // Keep a heading with the content that follows it
+                if (currentTokens - carriedTokens >= minTokens) {
+                    flush(false);
+                }
+                section = block.text();
+                if (currentTokens - carriedTokens == 0) {
+                    current.clear();
+                    currentTokens = 0;
+                    carriedTokens = 0;
+                    chunkSection = section;
+                }
+                append(block);
+                return;
+            }
+
+            if (block.tokens() > maxTokens) {
+                List<Block> pieces = splitOversized(block);
+                if (pieces.size() > 1) {
+                    pieces.forEach(this::add);
+                    return;
+                }
+            }
+
+            if (currentTokens + block.tokens() > targetTokens && currentTokens > carriedTokens) {
+                Block last = current.get(current.size() - 1);
+                if (last.type() == BlockType.HEADING && current.size() > 1) {
+                    // Do not leave a heading at the end of a chunk, move it to the next one
+                    current.remove(current.size() - 1);
+                    currentTokens -= last.tokens();
+                    if (currentTokens > carriedTokens) {
+                        flush(false);
+                    } else {
+                        current.clear();
+                        currentTokens = 0;
+                        carriedTokens = 0;
+                    }
+                    append(last);
+                } else {
+                    flush(true);
+                }
+            }
+            append(block);
+        }
+
+        void finish() {
+            if (currentTokens > carriedTokens) {
+                flush(false);
+            }
+        }
+
+        private void append(Block block) {
+            if (current.isEmpty()) {
+                chunkSection = section;
+            }
+            current.add(block);
+            currentTokens += block.tokens();
+        }
+
+        private void flush(boolean withOverlap) {
+            emit();
+            List<Block> tail = withOverlap ? overlapTail() : List.of();
+            current.clear();
+            current.addAll(tail);
+            currentTokens = tail.stream().mapToInt(Block::tokens).sum();
+            carriedTokens = currentTokens;
+            chunkSection = section;
+        }
+
+        private List<Block> overlapTail() {
+            List<Block> tail = new ArrayList<>();
+            int tokens = 0;
+            for (int i = current.size() - 1; i >= 0; i--) {
+                Block block = current.get(i);
+                if (block.type() == BlockType.HEADING || tokens + block.tokens() > overlapTokens) {
+                    if (tail.isEmpty() && block.type() == BlockType.PARAGRAPH) {
+                        Block sentences = trailingSentences(block);
+                        if (sentences != null) {
+                            tail.add(sentences);
+                        }
+                    }
+                    break;
+                }
+                tail.add(0, block);
+                tokens += block.tokens();
+            }
+            return tail;
+        }
+
+        private Block trailingSentences(Block block) {
+            String[] sentences = SENTENCE_END.split(block.text());
+            StringBuilder text = new StringBuilder();
+            int tokens = 0;
+            for (int i = sentences.length - 1; i > 0; i--) {
+                int sentenceTokens = countTokens(sentences[i]);
+                if (tokens + sentenceTokens > overlapTokens) {
+                    break;
+                }
+                text.insert(0, text.length() > 0 ? sentences[i] + " " : sentences[i]);
+                tokens += sentenceTokens;
+            }
+            return tokens == 0 ? null : newBlock(BlockType.PARAGRAPH, text.toString(), block.page());
+        }
+
+        private void emit() {
+            if (current.isEmpty()) {
+                return;
+            }
+            Map<String, Object> metadata = new HashMap<>(baseMetadata);
+            metadata.put(PAGE_NUMBER_KEY, current.get(0).page());
+            metadata.put(END_PAGE_NUMBER_KEY, current.get(current.size() - 1).page());
+            metadata.put(CHUNK_INDEX_KEY, chunkIndex++);
+            metadata.put(HAS_TABLE_KEY, current.stream().anyMatch(block -> block.type() == BlockType.TABLE));
+            if (chunkSection != null) {
+                metadata.put(SECTION_KEY, chunkSection);
+            }
+            String text = current.stream().map(Block::text).collect(Collectors.joining("\n\n"));
+            sink.accept(new Document(text, metadata));
+        }
+    }
+}
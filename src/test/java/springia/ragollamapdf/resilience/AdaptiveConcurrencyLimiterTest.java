@@ -0,0 +1,136 @@
+package springia.ragollamapdf.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void shedsImmediatelyWhenQueueIsFull() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(2, 2, 0, Duration.ofSeconds(5), Duration.ZERO);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void shedsQueuedRequestAfterMaxWait() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 1, 1, Duration.ofMillis(100), Duration.ZERO);
+        assertTrue(limiter.tryAcquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> acquire(limiter));
+        waitUntilWaiting(limiter, 1);
+        assertFalse(limiter.tryAcquire());
+
+        assertFalse(queued.get(2, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getWaiting());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void queuedRequestIsAdmittedWhenSlotIsReleased() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 1, 1, Duration.ofSeconds(5), Duration.ZERO);
+        assertTrue(limiter.tryAcquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> acquire(limiter));
+        waitUntilWaiting(limiter, 1);
+        limiter.release(FAST, true);
+
+        assertTrue(queued.get(2, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void limitDecreasesOnSlowOrFailedRequests() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(2, 10, 0, Duration.ZERO, Duration.ofMillis(100));
+        assertEquals(10, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(SLOW, true);
+        assertEquals(9, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(FAST, false);
+        assertEquals(8, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, false);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void limitIncreasesOnlyWhenSaturatedAndFast() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 3, 0, Duration.ZERO, Duration.ofMillis(100));
+        limiter.tryAcquire();
+        limiter.release(FAST, false);
+        limiter.tryAcquire();
+        limiter.release(FAST, false);
+        assertEquals(1, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(FAST, true);
+        assertEquals(2, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(FAST, true);
+        assertEquals(2, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.release(FAST, true);
+        assertEquals(3, limiter.getLimit());
+        limiter.release(FAST, true);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire();
+        }
+        limiter.release(FAST, true);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void fixedLimitWithoutTargetLatency() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 4, 0, Duration.ZERO, Duration.ZERO);
+
+        limiter.tryAcquire();
+        limiter.release(SLOW, false);
+        assertEquals(4, limiter.getLimit());
+    }
+
+    private static AdaptiveConcurrencyLimiter newLimiter(int min, int max, int queue, Duration maxWait, Duration target) {
+        return new AdaptiveConcurrencyLimiter("test", min, max, queue, maxWait, target);
+    }
+
+    private static boolean acquire(AdaptiveConcurrencyLimiter limiter) {
+        try {
+            return limiter.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void waitUntilWaiting(AdaptiveConcurrencyLimiter limiter, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (limiter.getWaiting() < waiting && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(waiting, limiter.getWaiting());
+    }
+}
@@ -0,0 +1,178 @@
+package springia.ragollamapdf.resilience;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(200);
+
+    private CircuitBreaker breaker;
+
+    @AfterEach
+    void shutdown() {
+        if (breaker != null) {
+            breaker.shutdown();
+        }
+    }
+
+    @Test
+    void opensAfterConsecutiveTransientFailures() {
+        breaker = newBreaker(2, Duration.ofSeconds(2), 1, 2, new RetryBudget(0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(calls)));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(calls)));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertThrows(CallNotPermittedException.class, () -> breaker.execute(failing(calls)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void halfOpenTrialClosesOnSuccess() throws InterruptedException {
+        breaker = newBreaker(1, Duration.ofSeconds(2), 1, 2, new RetryBudget(0.1, 10));
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(new AtomicInteger())));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenTrialFailureReopens() throws InterruptedException {
+        breaker = newBreaker(1, Duration.ofSeconds(2), 1, 2, new RetryBudget(0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(calls)));
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(calls)));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CallNotPermittedException.class, () -> breaker.execute(failing(calls)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void nonTransientErrorIsRethrownWithoutTripping() {
+        breaker = newBreaker(1, Duration.ofSeconds(2), 3, 2, new RetryBudget(0.1, 10));
+        IllegalArgumentException error = new IllegalArgumentException("bad request");
+        AtomicInteger calls = new AtomicInteger();
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> breaker.execute(() -> {
+            calls.incrementAndGet();
+            throw error;
+        }));
+        assertSame(error, thrown);
+        assertEquals(1, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void transientFailureIsRetried() {
+        breaker = newBreaker(5, Duration.ofSeconds(2), 3, 2, new RetryBudget(0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("ok", breaker.execute(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new ResourceAccessException("connection refused");
+            }
+            return "ok";
+        }));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void nonIdempotentCallIsNotRetried() {
+        breaker = newBreaker(5, Duration.ofSeconds(2), 3, 2, new RetryBudget(0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(calls), false));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void timeoutIsNotRetriedAndReportsWhenAbandonedCallEnds() throws InterruptedException {
+        breaker = newBreaker(5, Duration.ofMillis(100), 3, 2, new RetryBudget(0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        CallTimeoutException timeout = assertThrows(CallTimeoutException.class, () -> breaker.execute(() -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "late";
+        }));
+        assertEquals(1, calls.get());
+
+        CountDownLatch ended = new CountDownLatch(1);
+        timeout.whenAbandonedCallEnds(ended::countDown);
+        assertTrue(ended.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsWhenAllCallSlotsAreBusy() throws InterruptedException {
+        breaker = newBreaker(5, Duration.ofSeconds(2), 1, 1, new RetryBudget(0.1, 10));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread busy = new Thread(() -> breaker.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        busy.start();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(CallNotPermittedException.class, () -> breaker.execute(() -> calls.incrementAndGet()));
+        assertEquals(0, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        release.countDown();
+        busy.join(2000);
+    }
+
+    @Test
+    void retriesStopWhenBudgetIsExhausted() {
+        breaker = newBreaker(10, Duration.ofSeconds(2), 3, 2, new RetryBudget(0, 1));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(calls)));
+        assertEquals(2, calls.get());
+
+        calls.set(0);
+        assertThrows(BackendUnavailableException.class, () -> breaker.execute(failing(calls)));
+        assertEquals(1, calls.get());
+    }
+
+    private static CircuitBreaker newBreaker(int failureThreshold, Duration timeout, int maxAttempts,
+                                             int maxConcurrency, RetryBudget retryBudget) {
+        return new CircuitBreaker("test", failureThreshold, OPEN_DURATION, timeout, maxAttempts, maxConcurrency, retryBudget);
+    }
+
+    private static Supplier<String> failing(AtomicInteger calls) {
+        return () -> {
+            calls.incrementAndGet();
+            throw new ResourceAccessException("connection refused");
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package springia.ragollamapdf.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @Test
+    void startsFullAndIsExhaustedByRetries() {
+        RetryBudget budget = new RetryBudget(0.1, 2);
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void requestsRefillAtTheConfiguredRatio() {
+        RetryBudget budget = new RetryBudget(0.25, 1);
+        budget.tryAcquireRetry();
+
+        for (int i = 0; i < 3; i++) {
+            budget.recordRequest();
+        }
+        assertFalse(budget.tryAcquireRetry());
+
+        budget.recordRequest();
+        assertTrue(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void tokensAreCappedAtMaximum() {
+        RetryBudget budget = new RetryBudget(1, 2);
+        for (int i = 0; i < 10; i++) {
+            budget.recordRequest();
+        }
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+}
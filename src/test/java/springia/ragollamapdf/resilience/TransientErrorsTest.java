@@ -0,0 +1,43 @@
+package springia.ragollamapdf.resilience;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransientErrorsTest {
+
+    @Test
+    void outagesAreTransient() {
+        assertTrue(TransientErrors.isTransient(new ResourceAccessException("connection refused")));
+        assertTrue(TransientErrors.isTransient(new HttpServerErrorException(HttpStatus.BAD_GATEWAY)));
+        assertTrue(TransientErrors.isTransient(new TransientAiException("model loading")));
+        assertTrue(TransientErrors.isTransient(new TimeoutException()));
+        assertTrue(TransientErrors.isTransient(new IllegalStateException(new IOException("reset"))));
+    }
+
+    @Test
+    void callerErrorsAreNotTransient() {
+        assertFalse(TransientErrors.isTransient(new HttpClientErrorException(HttpStatus.NOT_FOUND)));
+        assertFalse(TransientErrors.isTransient(new NonTransientAiException("bad model", new IOException("wrapped"))));
+        assertFalse(TransientErrors.isTransient(new IllegalArgumentException("bad input")));
+        assertFalse(TransientErrors.isTransient(null));
+    }
+
+    @Test
+    void jiraErrorsDependOnStatus() {
+        assertTrue(TransientErrors.isTransient(new RestClientException(new IOException("reset"), 503)));
+        assertFalse(TransientErrors.isTransient(new RestClientException(new IOException("reset"), 404)));
+        assertTrue(TransientErrors.isTransient(new RestClientException(new IOException("reset"))));
+    }
+}
@@ -0,0 +1,28 @@
+package springia.ragollamapdf.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatServiceTest {
+
+    private final ChatService service = new ChatService(null, null, "small-model", "large-model", 20);
+
+    @Test
+    void shortGreetingsAndJqlGoToSmallModel() {
+        assertEquals(ChatTier.SMALL, service.route(ChatTask.GREETING, "hello"));
+        assertEquals(ChatTier.SMALL, service.route(ChatTask.JQL, "bugs in sprint 5"));
+    }
+
+    @Test
+    void longPromptsEscalateToLargeModel() {
+        assertEquals(ChatTier.LARGE, service.route(ChatTask.GREETING, "hello there, how are you doing today?"));
+        assertEquals(ChatTier.LARGE, service.route(ChatTask.JQL, "all open bugs assigned to john in sprint 5"));
+    }
+
+    @Test
+    void generalAndRagAlwaysGoToLargeModel() {
+        assertEquals(ChatTier.LARGE, service.route(ChatTask.GENERAL, "why?"));
+        assertEquals(ChatTier.LARGE, service.route(ChatTask.RAG, "sum"));
+    }
+}
@@ -0,0 +1,100 @@
+package springia.ragollamapdf.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JqlGenerationServiceTest {
+
+    private final JqlGenerationService service = new JqlGenerationService(null, null, null, 500, false, 0.92);
+
+    @Test
+    void templateCombinesAssigneeAndSprint() {
+        assertEquals("assignee = \"john\" AND sprint = \"5\" ORDER BY created DESC",
+                service.fromTemplates("issues assigned to john in sprint 5"));
+    }
+
+    @Test
+    void templateKeepsCapitalizedFullName() {
+        assertEquals("assignee = \"John Smith\" ORDER BY created DESC",
+                service.fromTemplates("Show issues assigned to John Smith"));
+    }
+
+    @Test
+    void templateHandlesCurrentUserStatusAndType() {
+        assertEquals("assignee = currentUser() AND status = \"in progress\" AND issuetype = \"Bug\" ORDER BY created DESC",
+                service.fromTemplates("show my bugs in progress"));
+    }
+
+    @Test
+    void templateHandlesOpenSprintAndFixVersion() {
+        assertEquals("sprint in openSprints() ORDER BY created DESC",
+                service.fromTemplates("tickets in the current sprint"));
+        assertEquals("fixVersion = \"2.4.1\" ORDER BY created DESC",
+                service.fromTemplates("list issues for fix version 2.4.1"));
+    }
+
+    @Test
+    void templateHandlesCreatedDates() {
+        assertEquals("created >= -7d ORDER BY created DESC",
+                service.fromTemplates("issues created in the last 7 days"));
+        assertEquals("created >= -8w ORDER BY created DESC",
+                service.fromTemplates("issues created in the last 2 months"));
+        assertEquals("created >= startOfWeek() ORDER BY created DESC",
+                service.fromTemplates("tickets created this week"));
+    }
+
+    @Test
+    void templateIsSkippedWhenQuestionHasUnmatchedTerms() {
+        assertNull(service.fromTemplates("Show open bugs in project PAY with high priority"));
+        assertNull(service.fromTemplates("what issues are blocking my release"));
+    }
+
+    @Test
+    void templateIsSkippedWithoutAnyIntent() {
+        assertNull(service.fromTemplates("summarize the discussion about the login page"));
+    }
+
+    @Test
+    void extractedValuesDistinguishNamesAndVersions() {
+        assertNotEquals(JqlGenerationService.extractValues("issues fixed by Alice"),
+                JqlGenerationService.extractValues("issues fixed by Bob"));
+        assertNotEquals(JqlGenerationService.extractValues("bugs in release 1.2"),
+                JqlGenerationService.extractValues("bugs in release 1.3"));
+        assertEquals(Set.of("pay-12"), JqlGenerationService.extractValues("what is the status of PAY-12"));
+        assertEquals(JqlGenerationService.extractValues("which issues are open"),
+                JqlGenerationService.extractValues("what issues are open"));
+    }
+
+    @Test
+    void validJqlPassesValidation() {
+        assertTrue(service.isValid("project = PAY AND status = \"In Progress\" ORDER BY created DESC"));
+        assertTrue(service.isValid("assignee in (alice, bob)"));
+        assertTrue(service.isValid("summary ~ \"login (mobile)\""));
+        assertTrue(service.isValid("assignee is EMPTY AND created >= -7d"));
+        assertTrue(service.isValid("(status was \"Done\") ORDER BY updated DESC"));
+    }
+
+    @Test
+    void malformedJqlFailsValidation() {
+        assertFalse(service.isValid(null));
+        assertFalse(service.isValid("   "));
+        assertFalse(service.isValid("Here is your query"));
+        assertFalse(service.isValid("project = PAY AND (status = Open"));
+        assertFalse(service.isValid("summary ~ \"unterminated"));
+        assertFalse(service.isValid("project = PAY\nThis query finds issues"));
+    }
+
+    @Test
+    void modelOutputIsStrippedOfCodeFences() {
+        assertEquals("project = PAY", JqlGenerationService.cleanModelOutput("```jql\nproject = PAY\n```"));
+        assertEquals("project = PAY", JqlGenerationService.cleanModelOutput("`project = PAY`"));
+        assertEquals("project = PAY", JqlGenerationService.cleanModelOutput("  project = PAY  \n"));
+    }
+}
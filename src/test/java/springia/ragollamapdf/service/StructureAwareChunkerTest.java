@@ -0,0 +1,109 @@
+package springia.ragollamapdf.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StructureAwareChunkerTest {
+
+    private static final String FIRST = "The cat sat on the mat. The dog lay by the door. Birds sang in the tree. Dogs bark at night.";
+    private static final String SECOND = "Rain fell on the roof. The wind blew from the west. Leaves fell from the oak. Snow came in the winter.";
+    private static final String THIRD = "Ships sail on the sea. The sun rose over the hills. Fish swim in the river. Stars shine at night.";
+
+    private final StructureAwareChunker chunker = new StructureAwareChunker(40, 60, 5, 10);
+
+    @Test
+    void headingStartsNewChunkAndNamesSection() {
+        List<Document> chunks = chunk("1. Introduction\n\n" + FIRST + "\n\n2. Methods\n\n" + SECOND);
+
+        assertEquals(2, chunks.size());
+        assertTrue(chunks.get(0).getText().startsWith("1. Introduction"));
+        assertEquals("1. Introduction", chunks.get(0).getMetadata().get(StructureAwareChunker.SECTION_KEY));
+        assertTrue(chunks.get(1).getText().startsWith("2. Methods"));
+        assertEquals("2. Methods", chunks.get(1).getMetadata().get(StructureAwareChunker.SECTION_KEY));
+        assertEquals(1, chunks.get(1).getMetadata().get(StructureAwareChunker.CHUNK_INDEX_KEY));
+    }
+
+    @Test
+    void headingIsNotLeftAtTheEndOfAChunk() {
+        List<Document> chunks = chunk(FIRST + "\n\nResults\n\n" + SECOND);
+
+        assertEquals(2, chunks.size());
+        assertFalse(chunks.get(0).getText().contains("Results"));
+        assertTrue(chunks.get(1).getText().startsWith("Results"));
+    }
+
+    @Test
+    void consecutiveChunksOverlapByTrailingSentences() {
+        List<Document> chunks = chunk(FIRST + "\n\n" + SECOND + "\n\n" + THIRD);
+
+        assertEquals(3, chunks.size());
+        assertTrue(chunks.get(1).getText().startsWith("Dogs bark at night."));
+        assertTrue(chunks.get(2).getText().startsWith("Snow came in the winter."));
+    }
+
+    @Test
+    void oversizedParagraphIsSplitBySentences() {
+        String paragraph = String.join(" ", FIRST, SECOND, THIRD, FIRST, SECOND, THIRD);
+        List<Document> chunks = chunk(paragraph);
+
+        assertTrue(chunks.size() > 1);
+        for (Document chunk : chunks) {
+            assertTrue(chunker.countTokens(chunk.getText()) <= 60, chunk.getText());
+            assertTrue(chunk.getText().endsWith("."), chunk.getText());
+        }
+    }
+
+    @Test
+    void oversizedTableIsSplitByRowsRepeatingHeader() {
+        String table = "Item\tQuantity\tPrice\n" + IntStream.rangeClosed(1, 30)
+                .mapToObj(i -> "item" + i + "\t" + i + "\t" + i + ".00")
+                .collect(Collectors.joining("\n"));
+        List<Document> chunks = chunk(table);
+
+        assertTrue(chunks.size() > 1);
+        for (Document chunk : chunks) {
+            assertTrue(chunk.getText().startsWith("Item | Quantity | Price\n"), chunk.getText());
+            assertEquals(true, chunk.getMetadata().get(StructureAwareChunker.HAS_TABLE_KEY));
+        }
+        assertTrue(chunks.get(chunks.size() - 1).getText().endsWith("item30 | 30 | 30.00"));
+    }
+
+    @Test
+    void onlyRowsWithColumnGapsFormATable() {
+        List<Document> chunks = chunk("Name\tRole\tTeam\nAlice\tDeveloper\tCore\n\n"
+                + "Total\tcost\tonly once\n\nwords  spaced  widely  are  not  columns.");
+
+        assertEquals(1, chunks.size());
+        String text = chunks.get(0).getText();
+        assertTrue(text.startsWith("Name | Role | Team\nAlice | Developer | Core\n\n"), text);
+        assertTrue(text.contains("Total cost only once"), text);
+        assertTrue(text.endsWith("words  spaced  widely  are  not  columns."), text);
+        assertEquals(true, chunks.get(0).getMetadata().get(StructureAwareChunker.HAS_TABLE_KEY));
+    }
+
+    @Test
+    void chunksTrackPageRange() {
+        List<Document> chunks = new ArrayList<>();
+        chunker.chunkPages(List.of("Overview\n\nThe cat sat on the mat.", "Dogs bark at night."), Map.of(), chunks::add);
+
+        assertEquals(1, chunks.size());
+        assertEquals(1, chunks.get(0).getMetadata().get(StructureAwareChunker.PAGE_NUMBER_KEY));
+        assertEquals(2, chunks.get(0).getMetadata().get(StructureAwareChunker.END_PAGE_NUMBER_KEY));
+    }
+
+    private List<Document> chunk(String pageText) {
+        List<Document> chunks = new ArrayList<>();
+        chunker.chunkPages(List.of(pageText), Map.of(), chunks::add);
+        return chunks;
+    }
+}